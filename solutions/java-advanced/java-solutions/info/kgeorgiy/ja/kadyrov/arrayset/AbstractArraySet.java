@@ -0,0 +1,317 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.*;
+
+/**
+ * Base of immutable navigable sets over sorted arrays without duplicates.
+ * A set is a window {@code [from, to)} of the backing array, possibly in descending order.
+ * Views share the backing array and are created in O(log n), views of views do not add indirection.
+ * Subclasses own the array and provide binary search over the window and element access.
+ *
+ * @param <E> type of elements.
+ * @param <S> type of views.
+ * @author Kadyrov Rustam.
+ */
+abstract class AbstractArraySet<E, S extends AbstractArraySet<E, S>> extends AbstractSet<E> implements NavigableSet<E> {
+    final int from;
+    final int to;
+    final boolean descending;
+
+    AbstractArraySet(int from, int to, boolean descending) {
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    /**
+     * Returns element of the backing array.
+     *
+     * @param index index in the backing array.
+     * @return element.
+     */
+    abstract E get(int index);
+
+    /**
+     * Searches element in the window of the backing array in ascending order.
+     *
+     * @param element searched element.
+     * @return the same as {@link Arrays#binarySearch(Object[], int, int, Object)}.
+     * @throws ClassCastException if element cannot be compared with elements of the set.
+     */
+    abstract int search(Object element);
+
+    /**
+     * Compares elements in ascending order of the backing array.
+     */
+    abstract int compare(E first, E second);
+
+    /**
+     * Returns comparator of the backing array, {@code null} for natural ordering.
+     */
+    abstract Comparator<? super E> ascendingComparator();
+
+    /**
+     * Creates view sharing the backing array.
+     *
+     * @param from       first index of the window.
+     * @param to         index after the last index of the window.
+     * @param descending order of the view.
+     * @return new view.
+     */
+    abstract S view(int from, int to, boolean descending);
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return search(element) >= 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(from, to, descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return iterator(from, to, !descending);
+    }
+
+    /**
+     * Returns iterator over a range of the backing array. Sets which decode elements
+     * in groups override it to avoid decoding every element separately.
+     *
+     * @param from       first index of the range.
+     * @param to         index after the last index of the range.
+     * @param descending whether elements are iterated from the last one.
+     * @return new iterator.
+     */
+    Iterator<E> iterator(int from, int to, boolean descending) {
+        return new Iterator<>() {
+            private int index = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return from <= index && index < to;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                E element = get(index);
+                index += descending ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
+    /**
+     * Returns spliterator, which splits the window in halves by indices in constant time.
+     * It is {@link Spliterator#SORTED} and {@link Spliterator#DISTINCT},
+     * so streams skip {@link java.util.stream.Stream#sorted()} and {@link java.util.stream.Stream#distinct()}.
+     *
+     * @return new spliterator.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new IndexSpliterator.OfElements<>(this, from, to, descending);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        Comparator<? super E> comparator = ascendingComparator();
+        if (!descending) {
+            return comparator;
+        }
+        return comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(comparator);
+    }
+
+    /**
+     * Returns index of the greatest element less than searched one in the order of the set, or -1.
+     *
+     * @param found result of {@link #search(Object)}.
+     * @return index in the backing array or -1.
+     */
+    int lowerIndex(int found) {
+        return checked(descending ? ascendingHigher(found) : ascendingLower(found));
+    }
+
+    /**
+     * Returns index of the greatest element less than or equal to searched one in the order of the set, or -1.
+     *
+     * @param found result of {@link #search(Object)}.
+     * @return index in the backing array or -1.
+     */
+    int floorIndex(int found) {
+        return checked(descending ? ascendingCeiling(found) : ascendingFloor(found));
+    }
+
+    /**
+     * Returns index of the least element greater than or equal to searched one in the order of the set, or -1.
+     *
+     * @param found result of {@link #search(Object)}.
+     * @return index in the backing array or -1.
+     */
+    int ceilingIndex(int found) {
+        return checked(descending ? ascendingFloor(found) : ascendingCeiling(found));
+    }
+
+    /**
+     * Returns index of the least element greater than searched one in the order of the set, or -1.
+     *
+     * @param found result of {@link #search(Object)}.
+     * @return index in the backing array or -1.
+     */
+    int higherIndex(int found) {
+        return checked(descending ? ascendingLower(found) : ascendingHigher(found));
+    }
+
+    /**
+     * Converts result of a search over the whole backing array to the result of {@link #search(Object)}.
+     *
+     * @param rank  index of the least element not less than the searched one in the backing array.
+     * @param found whether that element equals to the searched one.
+     * @return the same as {@link Arrays#binarySearch(Object[], int, int, Object)} over the window.
+     */
+    int windowed(int rank, boolean found) {
+        if (found && from <= rank && rank < to) {
+            return rank;
+        }
+        return -Math.min(Math.max(rank, from), to) - 1;
+    }
+
+    private int checked(int index) {
+        return from <= index && index < to ? index : -1;
+    }
+
+    private static int ascendingLower(int found) {
+        return found >= 0 ? found - 1 : -found - 2;
+    }
+
+    private static int ascendingFloor(int found) {
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private static int ascendingCeiling(int found) {
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static int ascendingHigher(int found) {
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    private E elementOrNull(int index) {
+        return index < 0 ? null : get(index);
+    }
+
+    @Override
+    public E lower(E element) {
+        return elementOrNull(lowerIndex(search(element)));
+    }
+
+    @Override
+    public E floor(E element) {
+        return elementOrNull(floorIndex(search(element)));
+    }
+
+    @Override
+    public E ceiling(E element) {
+        return elementOrNull(ceilingIndex(search(element)));
+    }
+
+    @Override
+    public E higher(E element) {
+        return elementOrNull(higherIndex(search(element)));
+    }
+
+    @Override
+    public E first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No lowest element.");
+        }
+        return get(descending ? to - 1 : from);
+    }
+
+    @Override
+    public E last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No highest element.");
+        }
+        return get(descending ? from : to - 1);
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("Set is immutable");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("Set is immutable");
+    }
+
+    @Override
+    public S descendingSet() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public S subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (Integer.signum(compare(fromElement, toElement)) * (descending ? -1 : 1) > 0) {
+            throw new IllegalArgumentException("First element greater than second element");
+        }
+        return descending
+                ? range(lowBound(toElement, toInclusive), highBound(fromElement, fromInclusive))
+                : range(lowBound(fromElement, fromInclusive), highBound(toElement, toInclusive));
+    }
+
+    @Override
+    public S headSet(E toElement, boolean inclusive) {
+        return descending ? range(lowBound(toElement, inclusive), to) : range(from, highBound(toElement, inclusive));
+    }
+
+    @Override
+    public S tailSet(E fromElement, boolean inclusive) {
+        return descending ? range(from, highBound(fromElement, inclusive)) : range(lowBound(fromElement, inclusive), to);
+    }
+
+    /**
+     * Returns index of the first element after the low bound in ascending order.
+     */
+    private int lowBound(E element, boolean inclusive) {
+        int found = search(element);
+        return inclusive ? ascendingCeiling(found) : ascendingHigher(found);
+    }
+
+    /**
+     * Returns index after the last element before the high bound in ascending order.
+     */
+    private int highBound(E element, boolean inclusive) {
+        int found = search(element);
+        return (inclusive ? ascendingFloor(found) : ascendingLower(found)) + 1;
+    }
+
+    private S range(int low, int high) {
+        return view(low, Math.max(low, high), descending);
+    }
+
+    @Override
+    public S subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public S headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public S tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -2,14 +2,26 @@ package info.kgeorgiy.ja.kadyrov.arrayset;
 
 import java.util.*;
 
-public class ArraySet<E extends Comparable<? super E>> extends AbstractSet<E> implements SortedSet<E> {
-    private final List<E> data;
+public class ArraySet<E extends Comparable<? super E>> extends AbstractArraySet<E, ArraySet<E>> {
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    private final Object[] data;
     private final Comparator<? super E> comparator;
+    // Elements in Eytzinger order and their indices in data, null for plain binary search
+    private final Object[] tree;
+    private final int[] ranks;
 
-    // :NOTE: duplicate code
-    private ArraySet(List<E> data, Comparator<? super E> comparator) {
+    private ArraySet(Object[] data, Comparator<? super E> comparator, Object[] tree, int[] ranks,
+                     int from, int to, boolean descending) {
+        super(from, to, descending);
         this.data = data;
         this.comparator = comparator;
+        this.tree = tree;
+        this.ranks = ranks;
+    }
+
+    private ArraySet(Object[] data, Comparator<? super E> comparator) {
+        this(data, comparator, null, null, 0, data.length, false);
     }
 
     public ArraySet() {
@@ -21,96 +33,251 @@ public class ArraySet<E extends Comparable<? super E>> extends AbstractSet<E> im
     }
 
     public ArraySet(Collection<? extends E> collection) {
-        this(List.copyOf(new TreeSet<>(collection)), Comparator.naturalOrder());
+        this(collection, Comparator.naturalOrder());
     }
 
     public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
-        this(toList(collection, comparator), comparator);
+        this(toArray(collection, comparator), comparator);
     }
 
-    private static <E> List<E> toList(Collection<? extends E> collection, Comparator<? super E> comparator) {
-        TreeSet<E> treeSet = new TreeSet<>(comparator);
-        treeSet.addAll(collection);
-        return List.copyOf(treeSet);
+    /**
+     * Returns sorted distinct elements of the collection.
+     * Sorted input is detected in one pass and is neither sorted nor copied again,
+     * otherwise a copy of the input is sorted in place and duplicates are removed in one linear pass.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Object[] toArray(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        Object[] elements = collection.toArray();
+        Comparator<Object> objects = (Comparator<Object>) comparator;
+        int order = order(elements, objects);
+        if (order > 0) {
+            if (elements.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(elements, objects);
+            } else {
+                Arrays.sort(elements, objects);
+            }
+        }
+        return order < 0 ? elements : distinct(elements, objects);
     }
 
-    @Override
-    public int size() {
-        return data.size();
+    /**
+     * Returns -1 for strictly increasing elements, 0 for non-decreasing ones and 1 otherwise.
+     */
+    private static int order(Object[] elements, Comparator<Object> comparator) {
+        int order = -1;
+        for (int i = 1; i < elements.length; i++) {
+            int compared = comparator.compare(elements[i - 1], elements[i]);
+            if (compared > 0) {
+                return 1;
+            }
+            if (compared == 0) {
+                order = 0;
+            }
+        }
+        return order;
     }
 
-    @Override
-    public Iterator<E> iterator() {
-        return data.iterator();
+    private static Object[] distinct(Object[] sorted, Comparator<Object> comparator) {
+        int size = 0;
+        for (Object element : sorted) {
+            if (size == 0 || comparator.compare(sorted[size - 1], element) != 0) {
+                sorted[size++] = element;
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
     }
 
-    @Override
-    public Comparator<? super E> comparator() {
-        if (comparator == Comparator.naturalOrder()) {
-            return null;
+    /**
+     * Returns set with the same elements that additionally keeps them in Eytzinger layout.
+     * Lookups of the set and its views descend the layout instead of binary search over the sorted array,
+     * which pays off while the set fits in CPU caches; for much larger sets it may be slower. Iteration still uses the sorted array.
+     * The layout takes a reference and an {@code int} per element.
+     *
+     * @return set with Eytzinger layout, this set if it already has one.
+     */
+    public ArraySet<E> withEytzingerLayout() {
+        if (tree != null) {
+            return this;
         }
-        return comparator;
+        int[] ranks = Eytzinger.ranks(data.length);
+        Object[] tree = new Object[data.length + 1];
+        for (int node = 1; node < tree.length; node++) {
+            tree[node] = data[ranks[node]];
+        }
+        return new ArraySet<E>(data, comparator, tree, ranks, from, to, descending);
     }
 
-    @Override
+    /**
+     * Returns set of elements contained in this set or in the other collection.
+     *
+     * @param other other collection.
+     * @return new set ordered as this set.
+     */
+    public ArraySet<E> union(Collection<? extends E> other) {
+        return merge(other, true, true, true);
+    }
+
+    /**
+     * Returns set of elements contained both in this set and in the other collection.
+     *
+     * @param other other collection.
+     * @return new set ordered as this set.
+     */
+    public ArraySet<E> intersection(Collection<? extends E> other) {
+        return merge(other, false, false, true);
+    }
+
+    /**
+     * Returns set of elements contained in this set, but not in the other collection.
+     *
+     * @param other other collection.
+     * @return new set ordered as this set.
+     */
+    public ArraySet<E> difference(Collection<? extends E> other) {
+        return merge(other, true, false, false);
+    }
+
+    /**
+     * Returns set of elements contained in exactly one of this set and the other collection.
+     *
+     * @param other other collection.
+     * @return new set ordered as this set.
+     */
+    public ArraySet<E> symmetricDifference(Collection<? extends E> other) {
+        return merge(other, true, true, false);
+    }
+
+    /**
+     * Merges windows of both sets in ascending order of the backing arrays.
+     * Runs of elements missing in the other set are skipped by galloping,
+     * so merge of sets of sizes {@code n <= m} takes {@code O(n log(m / n))} comparisons.
+     * Other collections are converted to a set with the same comparator first.
+     */
     @SuppressWarnings("unchecked")
-    public boolean contains(Object element) {
-        return (Collections.binarySearch(data, (E) element, comparator) >= 0);
+    private ArraySet<E> merge(Collection<? extends E> other, boolean keepLeft, boolean keepRight, boolean keepBoth) {
+        ArraySet<? extends E> right = other instanceof ArraySet<? extends E> set && sameOrder(set)
+                ? set
+                : new ArraySet<E>(other, comparator);
+        Comparator<Object> comparator = (Comparator<Object>) this.comparator;
+        Object[] left = data;
+        int i = from;
+        int j = right.from;
+        Object[] result = new Object[keepLeft || keepRight
+                ? (keepLeft ? size() : 0) + (keepRight ? right.size() : 0)
+                : Math.min(size(), right.size())];
+        int size = 0;
+        while (i < to && j < right.to) {
+            int compared = comparator.compare(left[i], right.data[j]);
+            if (compared < 0) {
+                int end = gallop(left, i + 1, to, right.data[j], comparator);
+                if (keepLeft) {
+                    System.arraycopy(left, i, result, size, end - i);
+                    size += end - i;
+                }
+                i = end;
+            } else if (compared > 0) {
+                int end = gallop(right.data, j + 1, right.to, left[i], comparator);
+                if (keepRight) {
+                    System.arraycopy(right.data, j, result, size, end - j);
+                    size += end - j;
+                }
+                j = end;
+            } else {
+                if (keepBoth) {
+                    result[size++] = left[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        if (keepLeft) {
+            System.arraycopy(left, i, result, size, to - i);
+            size += to - i;
+        }
+        if (keepRight) {
+            System.arraycopy(right.data, j, result, size, right.to - j);
+            size += right.to - j;
+        }
+        ArraySet<E> merged = new ArraySet<E>(size == result.length ? result : Arrays.copyOf(result, size),
+                this.comparator);
+        return descending ? merged.descendingSet() : merged;
     }
 
-    @Override
-    // :NOTE: O(n), duplicate
-    public SortedSet<E> subSet(E fromElement, E toElement) {
-        if (comparator.compare(fromElement, toElement) > 0) {
-            throw new IllegalArgumentException("First element greater than second element");
+    private boolean sameOrder(ArraySet<?> other) {
+        return comparator == other.comparator || comparator.equals(other.comparator);
+    }
+
+    /**
+     * Returns index of the first element not less than the key, searching exponentially growing steps from start.
+     */
+    private static int gallop(Object[] elements, int start, int end, Object key, Comparator<Object> comparator) {
+        // Elements before start are less than the key
+        int probe = start;
+        int step = 1;
+        while (probe < end && comparator.compare(elements[probe], key) < 0) {
+            start = probe + 1;
+            probe = end - probe > step ? probe + step : end;
+            step <<= 1;
         }
-        return checkedSubSet(fromElement, true, toElement, false);
+        int found = Arrays.binarySearch(elements, start, probe, key, comparator);
+        return found >= 0 ? found : -found - 1;
     }
 
     @Override
-    public SortedSet<E> headSet(E toElement) {
-        if (data.size() == 0) {
-            return new ArraySet<E>(comparator);
-        }
-        return checkedSubSet(first(), true, toElement, false);
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        return (E) data[index];
     }
 
     @Override
-    public SortedSet<E> tailSet(E fromElement) {
-        if (data.size() == 0) {
-            return new ArraySet<E>(comparator);
+    @SuppressWarnings("unchecked")
+    int search(Object element) {
+        // E[] would erase to Comparable[], so the array is searched as Object[]
+        Comparator<Object> comparator = (Comparator<Object>) this.comparator;
+        if (tree == null) {
+            return Arrays.binarySearch(data, from, to, element, comparator);
         }
-        return checkedSubSet(fromElement, true, last(), true);
+        int node = lowerBoundNode(element, comparator);
+        boolean found = node != 0 && comparator.compare(tree[node], element) == 0;
+        return windowed(ranks[node], found);
     }
 
-    @Override
-    public E first() {
-        if (data.isEmpty())
-            throw new NoSuchElementException("No lowest element.");
-        return data.get(0);
+    private int lowerBoundNode(Object element, Comparator<Object> comparator) {
+        // Node is long, as the child of a node may not fit in int
+        long node = 1;
+        while (node < tree.length) {
+            node = 2 * node + (comparator.compare(tree[(int) node], element) < 0 ? 1 : 0);
+        }
+        return Eytzinger.lowerBound(node);
     }
 
     @Override
-    public E last() {
-        if (data.size() == 0)
-            throw new NoSuchElementException("No highest element.");
-        return data.get(data.size() - 1);
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object element) {
+        if (tree != null && from == 0 && to == data.length) {
+            // Rank is not needed, which saves a random access
+            Comparator<Object> comparator = (Comparator<Object>) this.comparator;
+            int node = lowerBoundNode(element, comparator);
+            return node != 0 && comparator.compare(tree[node], element) == 0;
+        }
+        return super.contains(element);
     }
 
-    private int findIndex(E element) {
-        int i = Collections.binarySearch(data, element, comparator);
-        return i < 0 ? -i - 1 : i;
+    @Override
+    int compare(E first, E second) {
+        return comparator.compare(first, second);
     }
 
-    private SortedSet<E> checkedSubSet(E fromElement, boolean inclusiveFrom, E toElement, boolean inclusiveTo) {
-        int fromIndex = findIndex(fromElement);
-        if (!inclusiveFrom) {
-            fromIndex--;
-        }
-        int toIndex = findIndex(toElement);
-        if (inclusiveTo) {
-            toIndex++;
+    @Override
+    Comparator<? super E> ascendingComparator() {
+        if (comparator == Comparator.naturalOrder()) {
+            return null;
         }
-        return new ArraySet<>(data.subList(fromIndex, toIndex), comparator);
+        return comparator;
+    }
+
+    @Override
+    ArraySet<E> view(int from, int to, boolean descending) {
+        return new ArraySet<E>(data, comparator, tree, ranks, from, to, descending);
     }
 }
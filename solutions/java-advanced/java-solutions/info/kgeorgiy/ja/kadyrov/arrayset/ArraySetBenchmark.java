@@ -0,0 +1,123 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import info.kgeorgiy.ja.kadyrov.bench.Harness;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Throughput benchmarks of lookups in {@link ArraySet} and {@link IntArraySet}
+ * with binary search and with Eytzinger layout, and in {@link CompressedIntArraySet},
+ * against {@link Collections#binarySearch(List, Object)}.
+ * Command line format: {@code ArraySetBenchmark [--sizes 1024,1048576,16777216] [--results PREFIX] [--quick]}.
+ * Results are written to {@code PREFIX.json} and {@code PREFIX.csv}, {@code arrayset} by default.
+ * With {@code --quick} fewer and shorter iterations are run.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class ArraySetBenchmark {
+    private static final int PROBES = 1 << 16;
+
+    // Results are consumed, so that lookups are not eliminated as dead code
+    private static int sink;
+
+    public static void main(String[] args) {
+        try {
+            int[] sizes = {1 << 10, 1 << 20, 1 << 24};
+            Path results = Path.of("arrayset");
+            boolean quick = false;
+            for (int i = 0; args != null && i < args.length; i++) {
+                switch (args[i]) {
+                    case "--sizes" -> sizes = Arrays.stream(args[++i].split(","))
+                            .mapToInt(Integer::parseInt).toArray();
+                    case "--results" -> results = Path.of(args[++i]);
+                    case "--quick" -> quick = true;
+                    default -> throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+            Harness harness = quick
+                    ? new Harness(1, 3, 200_000_000L, System.out)
+                    : new Harness(3, 5, 1_000_000_000L, System.out);
+            for (int size : sizes) {
+                benchmark(harness, size);
+            }
+            harness.writeJson(results.resolveSibling(results.getFileName() + ".json"));
+            harness.writeCsv(results.resolveSibling(results.getFileName() + ".csv"));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("Expected value after the last option");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Incorrect arguments" + " " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Benchmark failed" + " " + e.getMessage());
+        }
+    }
+
+    private static void benchmark(Harness harness, int size) throws Exception {
+        Random random = new Random(size);
+        // Every other value is present, so half of the probes are hits
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 2 * i;
+        }
+        int[] probes = random.ints(PROBES, -1, 2 * size + 1).toArray();
+        Integer[] boxedProbes = Arrays.stream(probes).boxed().toArray(Integer[]::new);
+        List<Integer> list = Arrays.stream(values).boxed().toList();
+
+        ArraySet<Integer> binary = new ArraySet<>(list);
+        ArraySet<Integer> eytzinger = binary.withEytzingerLayout();
+        IntArraySet ints = new IntArraySet(values);
+        IntArraySet intsEytzinger = ints.withEytzingerLayout();
+        CompressedIntArraySet compressed = new CompressedIntArraySet(values);
+
+        String name = String.valueOf(size);
+        run(harness, "contains", name, "Collections.binarySearch",
+                () -> count(boxedProbes, probe -> Collections.binarySearch(list, probe) >= 0));
+        run(harness, "contains", name, "ArraySet", () -> count(boxedProbes, binary::contains));
+        run(harness, "contains", name, "ArraySet.eytzinger", () -> count(boxedProbes, eytzinger::contains));
+        run(harness, "contains", name, "IntArraySet", () -> count(probes, ints::contains));
+        run(harness, "contains", name, "IntArraySet.eytzinger", () -> count(probes, intsEytzinger::contains));
+        run(harness, "contains", name, "CompressedIntArraySet", () -> count(probes, compressed::contains));
+        run(harness, "floor", name, "ArraySet", () -> count(boxedProbes, probe -> binary.floor(probe) != null));
+        run(harness, "floor", name, "ArraySet.eytzinger",
+                () -> count(boxedProbes, probe -> eytzinger.floor(probe) != null));
+        run(harness, "ceiling", name, "IntArraySet",
+                () -> count(probes, probe -> ints.ceiling(probe).isPresent()));
+        run(harness, "ceiling", name, "IntArraySet.eytzinger",
+                () -> count(probes, probe -> intsEytzinger.ceiling(probe).isPresent()));
+    }
+
+    private static void run(Harness harness, String benchmark, String size, String implementation,
+                            Harness.Workload workload) throws Exception {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("size", size);
+        params.put("impl", implementation);
+        harness.run(benchmark, params, "ops/s", PROBES, workload);
+    }
+
+    private static void count(Integer[] probes, Predicate<Integer> lookup) {
+        int found = 0;
+        for (Integer probe : probes) {
+            if (lookup.test(probe)) {
+                found++;
+            }
+        }
+        sink += found;
+    }
+
+    private static void count(int[] probes, IntPredicate lookup) {
+        int found = 0;
+        for (int probe : probes) {
+            if (lookup.test(probe)) {
+                found++;
+            }
+        }
+        sink += found;
+    }
+}
@@ -0,0 +1,70 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over a window of a set stored in compressed blocks.
+ * Each block is decoded once when the iterator enters it, instead of once per element.
+ *
+ * @param <E> type of elements.
+ * @author Kadyrov Rustam.
+ */
+abstract class BlockIterator<E> implements Iterator<E> {
+    private final int blockSize;
+    private final int from;
+    private final int to;
+    private final int step;
+    private int index;
+    private int block = -1;
+
+    /**
+     * Creates iterator.
+     *
+     * @param blockSize  number of elements in a block.
+     * @param from       first index of the window.
+     * @param to         index after the last index of the window.
+     * @param descending whether elements are iterated from the last one.
+     */
+    BlockIterator(int blockSize, int from, int to, boolean descending) {
+        this.blockSize = blockSize;
+        this.from = from;
+        this.to = to;
+        this.step = descending ? -1 : 1;
+        this.index = descending ? to - 1 : from;
+    }
+
+    /**
+     * Decodes block into a buffer of the iterator.
+     *
+     * @param block index of the block.
+     */
+    abstract void decode(int block);
+
+    /**
+     * Returns element of the decoded block.
+     *
+     * @param offset index in the block.
+     * @return element.
+     */
+    abstract E element(int offset);
+
+    @Override
+    public boolean hasNext() {
+        return from <= index && index < to;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (index / blockSize != block) {
+            block = index / blockSize;
+            decode(block);
+        }
+        E element = element(index % blockSize);
+        index += step;
+        return element;
+    }
+}
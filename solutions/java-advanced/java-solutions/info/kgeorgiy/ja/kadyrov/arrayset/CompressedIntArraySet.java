@@ -0,0 +1,221 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable set of {@code int} values stored in compressed blocks of {@value #BLOCK_SIZE} values.
+ * The first value of every block is kept in a sorted index of heads, the other values are stored as gaps
+ * between neighbours minus one, bit-packed with the width of the largest gap of the block.
+ * Dense sets take a few bits per value or less, e.g. a range of consecutive values takes 0 bits per value.
+ * Lookups binary search the heads and decode one block, iteration decodes every block once.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class CompressedIntArraySet extends AbstractArraySet<Integer, CompressedIntArraySet> {
+    private static final int BLOCK_SIZE = 128;
+
+    private final Blocks blocks;
+
+    private CompressedIntArraySet(Blocks blocks, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.blocks = blocks;
+    }
+
+    private CompressedIntArraySet(Blocks blocks) {
+        this(blocks, 0, blocks.size, false);
+    }
+
+    public CompressedIntArraySet(int... elements) {
+        this(Blocks.encode(IntArraySet.distinctSorted(elements.clone())));
+    }
+
+    public CompressedIntArraySet(Collection<? extends Integer> collection) {
+        this(Blocks.encode(IntArraySet.distinctSorted(collection.stream().mapToInt(Integer::intValue).toArray())));
+    }
+
+    /**
+     * Compressed values shared by a set and its views.
+     *
+     * @param size      number of values.
+     * @param heads     first values of blocks.
+     * @param widths    widths of gaps in blocks in bits.
+     * @param positions bit positions of blocks in data, with the end position of the last block.
+     * @param data      bit-packed gaps.
+     */
+    private record Blocks(int size, int[] heads, byte[] widths, long[] positions, long[] data) {
+        static Blocks encode(int[] sorted) {
+            int count = (sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int[] heads = new int[count];
+            byte[] widths = new byte[count];
+            long[] positions = new long[count + 1];
+            for (int block = 0; block < count; block++) {
+                int start = block * BLOCK_SIZE;
+                int end = Math.min(sorted.length, start + BLOCK_SIZE);
+                long max = 0;
+                for (int i = start + 1; i < end; i++) {
+                    max = Math.max(max, gap(sorted, i));
+                }
+                heads[block] = sorted[start];
+                widths[block] = (byte) (Long.SIZE - Long.numberOfLeadingZeros(max));
+                positions[block + 1] = positions[block] + (long) widths[block] * (end - start - 1);
+            }
+            // One more word, so that reads never check for the end of data
+            long[] data = new long[(int) ((positions[count] + Long.SIZE - 1) / Long.SIZE) + 1];
+            for (int block = 0; block < count; block++) {
+                int start = block * BLOCK_SIZE;
+                int end = Math.min(sorted.length, start + BLOCK_SIZE);
+                long position = positions[block];
+                for (int i = start + 1; i < end; i++) {
+                    write(data, position, widths[block], gap(sorted, i));
+                    position += widths[block];
+                }
+            }
+            return new Blocks(sorted.length, heads, widths, positions, data);
+        }
+
+        private static long gap(int[] sorted, int index) {
+            return (long) sorted[index] - sorted[index - 1] - 1;
+        }
+
+        private static void write(long[] data, long position, int width, long value) {
+            int word = (int) (position >>> 6);
+            int shift = (int) (position & 63);
+            data[word] |= value << shift;
+            if (shift + width > Long.SIZE) {
+                data[word + 1] |= value >>> (Long.SIZE - shift);
+            }
+        }
+
+        private static long read(long[] data, long position, int width) {
+            int word = (int) (position >>> 6);
+            int shift = (int) (position & 63);
+            long value = data[word] >>> shift;
+            if (shift + width > Long.SIZE) {
+                value |= data[word + 1] << (Long.SIZE - shift);
+            }
+            return value & ((1L << width) - 1);
+        }
+
+        /**
+         * Returns value following the given one in the block.
+         *
+         * @param offset index of the following value in the block, starting from 1.
+         */
+        private int next(int block, int offset, int value) {
+            int width = widths[block];
+            return (int) (value + read(data, positions[block] + (long) (offset - 1) * width, width) + 1);
+        }
+
+        int get(int index) {
+            int block = index / BLOCK_SIZE;
+            int value = heads[block];
+            for (int offset = 1; offset <= index % BLOCK_SIZE; offset++) {
+                value = next(block, offset, value);
+            }
+            return value;
+        }
+
+        int decode(int block, int[] buffer) {
+            int length = Math.min(size, (block + 1) * BLOCK_SIZE) - block * BLOCK_SIZE;
+            buffer[0] = heads[block];
+            for (int offset = 1; offset < length; offset++) {
+                buffer[offset] = next(block, offset, buffer[offset - 1]);
+            }
+            return length;
+        }
+
+        /**
+         * Searches all values, result is the same as of {@link Arrays#binarySearch(int[], int)}.
+         */
+        int search(int element) {
+            int block = Arrays.binarySearch(heads, element);
+            if (block >= 0) {
+                return block * BLOCK_SIZE;
+            }
+            block = -block - 2;
+            if (block < 0) {
+                return -1;
+            }
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+            int value = heads[block];
+            for (int index = block * BLOCK_SIZE + 1; index < end; index++) {
+                value = next(block, index - block * BLOCK_SIZE, value);
+                if (value >= element) {
+                    return value == element ? index : -index - 1;
+                }
+            }
+            return -end - 1;
+        }
+    }
+
+    @Override
+    Integer get(int index) {
+        return blocks.get(index);
+    }
+
+    @Override
+    int search(Object element) {
+        return search((int) (Integer) element);
+    }
+
+    private int search(int element) {
+        int found = blocks.search(element);
+        return found >= 0 ? windowed(found, true) : windowed(-found - 1, false);
+    }
+
+    @Override
+    int compare(Integer first, Integer second) {
+        return Integer.compare(first, second);
+    }
+
+    @Override
+    Comparator<? super Integer> ascendingComparator() {
+        return null;
+    }
+
+    @Override
+    CompressedIntArraySet view(int from, int to, boolean descending) {
+        return new CompressedIntArraySet(blocks, from, to, descending);
+    }
+
+    @Override
+    Iterator<Integer> iterator(int from, int to, boolean descending) {
+        return new BlockIterator<>(BLOCK_SIZE, from, to, descending) {
+            private final int[] buffer = new int[BLOCK_SIZE];
+
+            @Override
+            void decode(int block) {
+                blocks.decode(block, buffer);
+            }
+
+            @Override
+            Integer element(int offset) {
+                return buffer[offset];
+            }
+        };
+    }
+
+    public boolean contains(int element) {
+        return search(element) >= 0;
+    }
+
+    public OptionalInt lower(int element) {
+        return elementAt(lowerIndex(search(element)));
+    }
+
+    public OptionalInt floor(int element) {
+        return elementAt(floorIndex(search(element)));
+    }
+
+    public OptionalInt ceiling(int element) {
+        return elementAt(ceilingIndex(search(element)));
+    }
+
+    public OptionalInt higher(int element) {
+        return elementAt(higherIndex(search(element)));
+    }
+
+    private OptionalInt elementAt(int index) {
+        return index < 0 ? OptionalInt.empty() : OptionalInt.of(blocks.get(index));
+    }
+}
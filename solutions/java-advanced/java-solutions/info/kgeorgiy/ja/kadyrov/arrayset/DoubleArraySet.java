@@ -0,0 +1,112 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.*;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable navigable set of {@code double} values stored in a sorted {@code double[]}.
+ * Takes 8 bytes per element instead of a reference and a {@link Double} for boxed sets.
+ * Primitive {@link #contains(double)}, {@link #floor(double)} and similar methods neither box nor use comparators,
+ * views returned by {@link NavigableSet} methods are {@code DoubleArraySet} too.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class DoubleArraySet extends AbstractArraySet<Double, DoubleArraySet> {
+    private final double[] elements;
+
+    private DoubleArraySet(double[] elements, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.elements = elements;
+    }
+
+    private DoubleArraySet(double[] sorted, boolean descending) {
+        this(sorted, 0, sorted.length, descending);
+    }
+
+    public DoubleArraySet(double... elements) {
+        this(distinctSorted(elements.clone()), false);
+    }
+
+    public DoubleArraySet(Collection<? extends Double> collection) {
+        this(distinctSorted(collection.stream().mapToDouble(Double::doubleValue).toArray()), false);
+    }
+
+    private static double[] distinctSorted(double[] elements) {
+        Arrays.sort(elements);
+        int size = 0;
+        for (double element : elements) {
+            if (size == 0 || Double.compare(elements[size - 1], element) != 0) {
+                elements[size++] = element;
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    Double get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    int search(Object element) {
+        return search((double) (Double) element);
+    }
+
+    private int search(double element) {
+        return Arrays.binarySearch(elements, from, to, element);
+    }
+
+    @Override
+    int compare(Double first, Double second) {
+        return Double.compare(first, second);
+    }
+
+    @Override
+    Comparator<? super Double> ascendingComparator() {
+        return null;
+    }
+
+    @Override
+    DoubleArraySet view(int from, int to, boolean descending) {
+        return new DoubleArraySet(elements, from, to, descending);
+    }
+
+    @Override
+    public Spliterator.OfDouble spliterator() {
+        return new IndexSpliterator.OfDouble(elements, from, to, descending, comparator());
+    }
+
+    /**
+     * Returns sequential stream of values without boxing.
+     *
+     * @return stream of values in the order of the set.
+     */
+    public DoubleStream doubleStream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+
+    public boolean contains(double element) {
+        return search(element) >= 0;
+    }
+
+    public OptionalDouble lower(double element) {
+        return elementAt(lowerIndex(search(element)));
+    }
+
+    public OptionalDouble floor(double element) {
+        return elementAt(floorIndex(search(element)));
+    }
+
+    public OptionalDouble ceiling(double element) {
+        return elementAt(ceilingIndex(search(element)));
+    }
+
+    public OptionalDouble higher(double element) {
+        return elementAt(higherIndex(search(element)));
+    }
+
+    private OptionalDouble elementAt(int index) {
+        return index < 0 ? OptionalDouble.empty() : OptionalDouble.of(elements[index]);
+    }
+}
@@ -0,0 +1,54 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+/**
+ * Eytzinger layout of a sorted array: node {@code k} of an implicit binary search tree
+ * has children {@code 2k} and {@code 2k + 1}, nodes are numbered from 1.
+ * The first levels of the tree share a few cache lines and children of a node lie next to each other,
+ * so a search touches one new cache line per level deep in the tree instead of jumping across the whole array.
+ * Arrays may have up to {@code Integer.MAX_VALUE} nodes, so nodes below the last level are {@code long}.
+ *
+ * @author Kadyrov Rustam.
+ */
+final class Eytzinger {
+    private Eytzinger() {
+    }
+
+    /**
+     * Returns ranks of nodes: {@code ranks[k]} is the index in the sorted array of the element stored in node {@code k}.
+     * {@code ranks[0]} is the size of the array and stands for "after the last element".
+     *
+     * @param size size of the sorted array.
+     * @return array of {@code size + 1} ranks.
+     */
+    static int[] ranks(int size) {
+        int[] ranks = new int[size + 1];
+        ranks[0] = size;
+        fill(ranks, 1, 0);
+        return ranks;
+    }
+
+    /**
+     * Numbers the subtree in order, recursion depth is the height of the tree.
+     *
+     * @return next rank after the subtree.
+     */
+    private static int fill(int[] ranks, int node, int rank) {
+        if (node < ranks.length) {
+            rank = fill(ranks, 2 * node, rank);
+            ranks[node] = rank++;
+            rank = fill(ranks, 2 * node + 1, rank);
+        }
+        return rank;
+    }
+
+    /**
+     * Finishes descent of the search: the descent goes right while the node is less than the searched element
+     * and ends below a leaf, the answer is the last node where it went left.
+     *
+     * @param node node after the descent, which is below the last level.
+     * @return node of the least element not less than the searched one, or 0.
+     */
+    static int lowerBound(long node) {
+        return (int) (node >> (Long.numberOfTrailingZeros(~node) + 1));
+    }
+}
@@ -0,0 +1,261 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+/**
+ * Immutable navigable set of strings in natural order, stored in front-coded blocks of {@value #BLOCK_SIZE} strings.
+ * The first string of every block is kept in a sorted index of heads, every other string is stored
+ * as the length of the prefix shared with the previous string and the rest of the string.
+ * Chars are stored one by one in one to three bytes as in UTF-8, so ASCII takes a byte per char
+ * and any string, including one with unpaired surrogates, is restored exactly.
+ * Sorted keys with long common prefixes, such as paths or URLs, take a few bytes per key.
+ * Lookups binary search the heads and compare decoded chars of one block in place,
+ * iteration decodes every block once.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class FrontCodedArraySet extends AbstractArraySet<String, FrontCodedArraySet> {
+    private static final int BLOCK_SIZE = 16;
+
+    private final Blocks blocks;
+
+    private FrontCodedArraySet(Blocks blocks, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.blocks = blocks;
+    }
+
+    private FrontCodedArraySet(Blocks blocks) {
+        this(blocks, 0, blocks.size, false);
+    }
+
+    public FrontCodedArraySet(Collection<? extends String> collection) {
+        this(Blocks.encode(new ArraySet<>(collection)));
+    }
+
+    /**
+     * Front-coded strings shared by a set and its views.
+     *
+     * @param size    number of strings.
+     * @param heads   first strings of blocks.
+     * @param offsets offsets of blocks in data, with the end offset of the last block.
+     * @param data    strings of blocks after the first one: varint shared prefix length in chars,
+     *                varint length of the rest in chars and the encoded chars of the rest.
+     */
+    private record Blocks(int size, String[] heads, int[] offsets, byte[] data) {
+        static Blocks encode(Collection<String> sorted) {
+            int count = (sorted.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            String[] heads = new String[count];
+            int[] offsets = new int[count + 1];
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int index = 0;
+            String previous = null;
+            for (String string : sorted) {
+                int block = index / BLOCK_SIZE;
+                if (index % BLOCK_SIZE == 0) {
+                    heads[block] = string;
+                    offsets[block] = data.size();
+                } else {
+                    int shared = sharedPrefix(previous, string);
+                    writeVarint(data, shared);
+                    writeVarint(data, string.length() - shared);
+                    for (int i = shared; i < string.length(); i++) {
+                        writeChar(data, string.charAt(i));
+                    }
+                }
+                previous = string;
+                index++;
+            }
+            offsets[count] = data.size();
+            return new Blocks(sorted.size(), heads, offsets, data.toByteArray());
+        }
+
+        private static int sharedPrefix(String first, String second) {
+            int length = Math.min(first.length(), second.length());
+            int shared = 0;
+            while (shared < length && first.charAt(shared) == second.charAt(shared)) {
+                shared++;
+            }
+            return shared;
+        }
+
+        /**
+         * Writes char as UTF-8 would write a code point, surrogates are written separately.
+         */
+        private static void writeChar(ByteArrayOutputStream out, char c) {
+            if (c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xC0 | c >> 6);
+                out.write(0x80 | c & 0x3F);
+            } else {
+                out.write(0xE0 | c >> 12);
+                out.write(0x80 | c >> 6 & 0x3F);
+                out.write(0x80 | c & 0x3F);
+            }
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write(value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /**
+         * Decodes strings of a block one by one into a reused buffer of chars.
+         */
+        private class Cursor {
+            private int offset;
+            private char[] chars;
+            private int length;
+
+            Cursor(int block) {
+                String head = heads[block];
+                offset = offsets[block];
+                chars = new char[Math.max(head.length(), 16)];
+                length = head.length();
+                head.getChars(0, length, chars, 0);
+            }
+
+            void next() {
+                length = readVarint();
+                int rest = readVarint();
+                if (chars.length < length + rest) {
+                    chars = Arrays.copyOf(chars, Math.max(length + rest, chars.length * 2));
+                }
+                for (int i = 0; i < rest; i++) {
+                    chars[length++] = readChar();
+                }
+            }
+
+            String current() {
+                return new String(chars, 0, length);
+            }
+
+            /**
+             * Compares current string with the given one as {@link String#compareTo} does.
+             */
+            int compareTo(String string) {
+                int common = Math.min(length, string.length());
+                for (int i = 0; i < common; i++) {
+                    if (chars[i] != string.charAt(i)) {
+                        return chars[i] - string.charAt(i);
+                    }
+                }
+                return length - string.length();
+            }
+
+            private char readChar() {
+                int b = data[offset++] & 0xFF;
+                if (b < 0x80) {
+                    return (char) b;
+                } else if (b < 0xE0) {
+                    return (char) ((b & 0x1F) << 6 | data[offset++] & 0x3F);
+                }
+                int c = (b & 0x0F) << 12 | (data[offset++] & 0x3F) << 6;
+                return (char) (c | data[offset++] & 0x3F);
+            }
+
+            private int readVarint() {
+                int value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        return value;
+                    }
+                }
+            }
+        }
+
+        String get(int index) {
+            if (index % BLOCK_SIZE == 0) {
+                return heads[index / BLOCK_SIZE];
+            }
+            Cursor cursor = new Cursor(index / BLOCK_SIZE);
+            for (int offset = 0; offset < index % BLOCK_SIZE; offset++) {
+                cursor.next();
+            }
+            return cursor.current();
+        }
+
+        void decode(int block, String[] buffer) {
+            int length = Math.min(size, (block + 1) * BLOCK_SIZE) - block * BLOCK_SIZE;
+            Cursor cursor = new Cursor(block);
+            buffer[0] = heads[block];
+            for (int offset = 1; offset < length; offset++) {
+                cursor.next();
+                buffer[offset] = cursor.current();
+            }
+        }
+
+        /**
+         * Searches all strings, result is the same as of {@link Arrays#binarySearch(Object[], Object)}.
+         */
+        int search(String element) {
+            int block = Arrays.binarySearch(heads, element);
+            if (block >= 0) {
+                return block * BLOCK_SIZE;
+            }
+            block = -block - 2;
+            if (block < 0) {
+                return -1;
+            }
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+            Cursor cursor = new Cursor(block);
+            for (int index = block * BLOCK_SIZE + 1; index < end; index++) {
+                cursor.next();
+                int compared = cursor.compareTo(element);
+                if (compared >= 0) {
+                    return compared == 0 ? index : -index - 1;
+                }
+            }
+            return -end - 1;
+        }
+    }
+
+    @Override
+    String get(int index) {
+        return blocks.get(index);
+    }
+
+    @Override
+    int search(Object element) {
+        int found = blocks.search((String) Objects.requireNonNull(element));
+        return found >= 0 ? windowed(found, true) : windowed(-found - 1, false);
+    }
+
+    @Override
+    int compare(String first, String second) {
+        return first.compareTo(second);
+    }
+
+    @Override
+    Comparator<? super String> ascendingComparator() {
+        return null;
+    }
+
+    @Override
+    FrontCodedArraySet view(int from, int to, boolean descending) {
+        return new FrontCodedArraySet(blocks, from, to, descending);
+    }
+
+    @Override
+    Iterator<String> iterator(int from, int to, boolean descending) {
+        return new BlockIterator<>(BLOCK_SIZE, from, to, descending) {
+            private final String[] buffer = new String[BLOCK_SIZE];
+
+            @Override
+            void decode(int block) {
+                blocks.decode(block, buffer);
+            }
+
+            @Override
+            String element(int offset) {
+                return buffer[offset];
+            }
+        };
+    }
+}
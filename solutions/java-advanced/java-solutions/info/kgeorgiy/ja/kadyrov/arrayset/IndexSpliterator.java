@@ -0,0 +1,207 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.*;
+
+/**
+ * Spliterator over a range {@code [low, high)} of indices of a sorted array without duplicates,
+ * possibly in descending order. Splits the range in halves in constant time, split parts are sized exactly.
+ *
+ * @param <T> type of elements.
+ * @param <S> type of split parts.
+ * @author Kadyrov Rustam.
+ */
+abstract class IndexSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+    private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+
+    int low;
+    int high;
+    final boolean descending;
+    private final Comparator<? super T> comparator;
+
+    /**
+     * Creates spliterator.
+     *
+     * @param low        first index of the range.
+     * @param high       index after the last index of the range.
+     * @param descending whether elements are traversed from the last one.
+     * @param comparator order of traversal, {@code null} for natural ascending order.
+     */
+    IndexSpliterator(int low, int high, boolean descending, Comparator<? super T> comparator) {
+        this.low = low;
+        this.high = high;
+        this.descending = descending;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates spliterator over a part of the range with the same order.
+     */
+    abstract S create(int low, int high);
+
+    /**
+     * Returns index of the next element and removes it from the range, the range should not be empty.
+     */
+    int nextIndex() {
+        return descending ? --high : low++;
+    }
+
+    @Override
+    public S trySplit() {
+        if (high - low < 2) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        // Prefix in the order of traversal is split off
+        if (descending) {
+            S prefix = create(middle, high);
+            high = middle;
+            return prefix;
+        }
+        S prefix = create(low, middle);
+        low = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return high - low;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Spliterator over elements of a set.
+     */
+    static final class OfElements<E> extends IndexSpliterator<E, Spliterator<E>> {
+        private final AbstractArraySet<E, ?> set;
+
+        OfElements(AbstractArraySet<E, ?> set, int low, int high, boolean descending) {
+            super(low, high, descending, set.comparator());
+            this.set = set;
+        }
+
+        @Override
+        Spliterator<E> create(int low, int high) {
+            return new OfElements<>(set, low, high, descending);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (low >= high) {
+                return false;
+            }
+            action.accept(set.get(nextIndex()));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            set.iterator(low, high, descending).forEachRemaining(action);
+            low = high;
+        }
+    }
+
+    /**
+     * Spliterator over an {@code int[]}.
+     */
+    static final class OfInt extends IndexSpliterator<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+        private final int[] elements;
+
+        OfInt(int[] elements, int low, int high, boolean descending, Comparator<? super Integer> comparator) {
+            super(low, high, descending, comparator);
+            this.elements = elements;
+        }
+
+        @Override
+        Spliterator.OfInt create(int low, int high) {
+            return new IndexSpliterator.OfInt(elements, low, high, descending, getComparator());
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (low >= high) {
+                return false;
+            }
+            action.accept(elements[nextIndex()]);
+            return true;
+        }
+    }
+
+    /**
+     * Spliterator over a {@code long[]}.
+     */
+    static final class OfLong extends IndexSpliterator<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+        private final long[] elements;
+
+        OfLong(long[] elements, int low, int high, boolean descending, Comparator<? super Long> comparator) {
+            super(low, high, descending, comparator);
+            this.elements = elements;
+        }
+
+        @Override
+        Spliterator.OfLong create(int low, int high) {
+            return new IndexSpliterator.OfLong(elements, low, high, descending, getComparator());
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (low >= high) {
+                return false;
+            }
+            action.accept(elements[nextIndex()]);
+            return true;
+        }
+    }
+
+    /**
+     * Spliterator over a {@code double[]}.
+     */
+    static final class OfDouble extends IndexSpliterator<Double, Spliterator.OfDouble>
+            implements Spliterator.OfDouble {
+        private final double[] elements;
+
+        OfDouble(double[] elements, int low, int high, boolean descending, Comparator<? super Double> comparator) {
+            super(low, high, descending, comparator);
+            this.elements = elements;
+        }
+
+        @Override
+        Spliterator.OfDouble create(int low, int high) {
+            return new IndexSpliterator.OfDouble(elements, low, high, descending, getComparator());
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (low >= high) {
+                return false;
+            }
+            action.accept(elements[nextIndex()]);
+            return true;
+        }
+    }
+}
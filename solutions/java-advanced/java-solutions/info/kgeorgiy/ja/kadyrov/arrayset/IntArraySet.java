@@ -0,0 +1,155 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable navigable set of {@code int} values stored in a sorted {@code int[]}.
+ * Takes 4 bytes per element instead of a reference and an {@link Integer} for boxed sets.
+ * Primitive {@link #contains(int)}, {@link #floor(int)} and similar methods neither box nor use comparators,
+ * views returned by {@link NavigableSet} methods are {@code IntArraySet} too.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class IntArraySet extends AbstractArraySet<Integer, IntArraySet> {
+    private final int[] elements;
+    // Elements in Eytzinger order and their indices in elements, null for plain binary search
+    private final int[] tree;
+    private final int[] ranks;
+
+    private IntArraySet(int[] elements, int[] tree, int[] ranks, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.elements = elements;
+        this.tree = tree;
+        this.ranks = ranks;
+    }
+
+    private IntArraySet(int[] sorted, boolean descending) {
+        this(sorted, null, null, 0, sorted.length, descending);
+    }
+
+    public IntArraySet(int... elements) {
+        this(distinctSorted(elements.clone()), false);
+    }
+
+    public IntArraySet(Collection<? extends Integer> collection) {
+        this(distinctSorted(collection.stream().mapToInt(Integer::intValue).toArray()), false);
+    }
+
+    static int[] distinctSorted(int[] elements) {
+        Arrays.sort(elements);
+        int size = 0;
+        for (int element : elements) {
+            if (size == 0 || elements[size - 1] != element) {
+                elements[size++] = element;
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Returns set with the same elements that additionally keeps them in Eytzinger layout.
+     * Lookups of the set and its views descend the layout instead of binary search over the sorted array,
+     * which pays off while the set fits in CPU caches; for much larger sets it may be slower. Iteration still uses the sorted array.
+     * The layout takes 8 bytes per element.
+     *
+     * @return set with Eytzinger layout, this set if it already has one.
+     */
+    public IntArraySet withEytzingerLayout() {
+        if (tree != null) {
+            return this;
+        }
+        int[] ranks = Eytzinger.ranks(elements.length);
+        int[] tree = new int[elements.length + 1];
+        for (int node = 1; node < tree.length; node++) {
+            tree[node] = elements[ranks[node]];
+        }
+        return new IntArraySet(elements, tree, ranks, from, to, descending);
+    }
+
+    @Override
+    Integer get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    int search(Object element) {
+        return search((int) (Integer) element);
+    }
+
+    private int search(int element) {
+        if (tree == null) {
+            return Arrays.binarySearch(elements, from, to, element);
+        }
+        int node = lowerBoundNode(element);
+        return windowed(ranks[node], node != 0 && tree[node] == element);
+    }
+
+    private int lowerBoundNode(int element) {
+        // Node is long, as the child of a node may not fit in int
+        long node = 1;
+        while (node < tree.length) {
+            node = 2 * node + (tree[(int) node] < element ? 1 : 0);
+        }
+        return Eytzinger.lowerBound(node);
+    }
+
+    @Override
+    int compare(Integer first, Integer second) {
+        return Integer.compare(first, second);
+    }
+
+    @Override
+    Comparator<? super Integer> ascendingComparator() {
+        return null;
+    }
+
+    @Override
+    IntArraySet view(int from, int to, boolean descending) {
+        return new IntArraySet(elements, tree, ranks, from, to, descending);
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return new IndexSpliterator.OfInt(elements, from, to, descending, comparator());
+    }
+
+    /**
+     * Returns sequential stream of values without boxing.
+     *
+     * @return stream of values in the order of the set.
+     */
+    public IntStream intStream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    public boolean contains(int element) {
+        if (tree != null && from == 0 && to == elements.length) {
+            // Rank is not needed, which saves a random access
+            int node = lowerBoundNode(element);
+            return node != 0 && tree[node] == element;
+        }
+        return search(element) >= 0;
+    }
+
+    public OptionalInt lower(int element) {
+        return elementAt(lowerIndex(search(element)));
+    }
+
+    public OptionalInt floor(int element) {
+        return elementAt(floorIndex(search(element)));
+    }
+
+    public OptionalInt ceiling(int element) {
+        return elementAt(ceilingIndex(search(element)));
+    }
+
+    public OptionalInt higher(int element) {
+        return elementAt(higherIndex(search(element)));
+    }
+
+    private OptionalInt elementAt(int index) {
+        return index < 0 ? OptionalInt.empty() : OptionalInt.of(elements[index]);
+    }
+}
@@ -0,0 +1,112 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable navigable set of {@code long} values stored in a sorted {@code long[]}.
+ * Takes 8 bytes per element instead of a reference and a {@link Long} for boxed sets.
+ * Primitive {@link #contains(long)}, {@link #floor(long)} and similar methods neither box nor use comparators,
+ * views returned by {@link NavigableSet} methods are {@code LongArraySet} too.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class LongArraySet extends AbstractArraySet<Long, LongArraySet> {
+    private final long[] elements;
+
+    private LongArraySet(long[] elements, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.elements = elements;
+    }
+
+    private LongArraySet(long[] sorted, boolean descending) {
+        this(sorted, 0, sorted.length, descending);
+    }
+
+    public LongArraySet(long... elements) {
+        this(distinctSorted(elements.clone()), false);
+    }
+
+    public LongArraySet(Collection<? extends Long> collection) {
+        this(distinctSorted(collection.stream().mapToLong(Long::longValue).toArray()), false);
+    }
+
+    private static long[] distinctSorted(long[] elements) {
+        Arrays.sort(elements);
+        int size = 0;
+        for (long element : elements) {
+            if (size == 0 || elements[size - 1] != element) {
+                elements[size++] = element;
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    Long get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    int search(Object element) {
+        return search((long) (Long) element);
+    }
+
+    private int search(long element) {
+        return Arrays.binarySearch(elements, from, to, element);
+    }
+
+    @Override
+    int compare(Long first, Long second) {
+        return Long.compare(first, second);
+    }
+
+    @Override
+    Comparator<? super Long> ascendingComparator() {
+        return null;
+    }
+
+    @Override
+    LongArraySet view(int from, int to, boolean descending) {
+        return new LongArraySet(elements, from, to, descending);
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return new IndexSpliterator.OfLong(elements, from, to, descending, comparator());
+    }
+
+    /**
+     * Returns sequential stream of values without boxing.
+     *
+     * @return stream of values in the order of the set.
+     */
+    public LongStream longStream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    public boolean contains(long element) {
+        return search(element) >= 0;
+    }
+
+    public OptionalLong lower(long element) {
+        return elementAt(lowerIndex(search(element)));
+    }
+
+    public OptionalLong floor(long element) {
+        return elementAt(floorIndex(search(element)));
+    }
+
+    public OptionalLong ceiling(long element) {
+        return elementAt(ceilingIndex(search(element)));
+    }
+
+    public OptionalLong higher(long element) {
+        return elementAt(higherIndex(search(element)));
+    }
+
+    private OptionalLong elementAt(int index) {
+        return index < 0 ? OptionalLong.empty() : OptionalLong.of(elements[index]);
+    }
+}
@@ -0,0 +1,525 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable navigable set stored in a memory-mapped file, so that one file is shared by all processes opening it.
+ * Elements are encoded by a {@link Codec} to records, which are sorted by unsigned lexicographic order of their bytes.
+ * Records are either of a fixed width, or of variable length located by a table of offsets.
+ * Lookups compare the encoded key with records in place, only iteration decodes elements.
+ * Keys of {@link Codec#INT} and {@link Codec#LONG} are compared as numbers and keys of {@link Codec#STRING}
+ * are encoded to a per-thread buffer, so lookups with these codecs do not allocate.
+ * Opening maps the file without reading it, the set itself takes a few objects of the heap.
+ * Files are written once by a {@link Builder}.
+ *
+ * @param <E> type of elements.
+ * @author Kadyrov Rustam.
+ */
+public class MappedArraySet<E> extends AbstractArraySet<E, MappedArraySet<E>> {
+    private static final long MAGIC = 0x4D41505041525241L;
+    private static final int VERSION = 1;
+    // Magic, version, width, size, longest record
+    private static final int HEADER_SIZE = Long.BYTES + 4 * Integer.BYTES;
+    // A single mapping cannot exceed 2 GiB, chunks overlap by the longest record, so no record is split
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    // Longer keys are encoded to a new array, so that a thread does not keep a huge buffer
+    private static final int MAX_SCRATCH = 1 << 16;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
+
+    private final Storage<E> storage;
+
+    private MappedArraySet(Storage<E> storage, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.storage = storage;
+    }
+
+    /**
+     * Maps set written by a {@link Builder} with the same codec. The file is mapped read-only
+     * and stays mapped until the set and all its views are garbage collected.
+     *
+     * @param file  file of the set.
+     * @param codec codec of elements.
+     * @param <E>   type of elements.
+     * @return mapped set.
+     * @throws IOException if an I/O error occurs or file is not a set written with the codec.
+     */
+    public static <E> MappedArraySet<E> open(Path file, Codec<E> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("File is too short for a mapped set " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a mapped set " + file);
+            }
+            int width = header.getInt();
+            int size = header.getInt();
+            int longest = header.getInt();
+            if (width != codec.width()) {
+                throw new IOException("Expected records of width " + codec.width() + ", found " + width);
+            }
+            if (size < 0 || width == 0 && HEADER_SIZE + (size + 1L) * Long.BYTES > length) {
+                throw new IOException("Mapped set is damaged " + file);
+            }
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_BITS;
+                long end = Math.min(length, start + CHUNK_MASK + 1 + Math.max(longest, Long.BYTES));
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+            Storage<E> storage = new Storage<>(codec, chunks, width, size);
+            if (storage.end() != length) {
+                throw new IOException("Mapped set is damaged " + file);
+            }
+            return new MappedArraySet<>(storage, 0, size, false);
+        }
+    }
+
+    /**
+     * Creates builder of a set file.
+     *
+     * @param codec codec of elements.
+     * @param <E>   type of elements.
+     * @return new builder.
+     */
+    public static <E> Builder<E> builder(Codec<E> codec) {
+        return new Builder<>(codec);
+    }
+
+    @Override
+    E get(int index) {
+        return storage.codec.decode(storage.record(index));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    int search(Object element) {
+        Codec<E> codec = storage.codec;
+        if (codec == Codec.INT) {
+            return search(Integer.toUnsignedLong((Integer) element ^ Integer.MIN_VALUE));
+        } else if (codec == Codec.LONG) {
+            return search((Long) element ^ Long.MIN_VALUE);
+        } else if (codec == Codec.STRING) {
+            String string = (String) element;
+            byte[] key = SCRATCH.get();
+            // UTF-8 takes at most three bytes per char
+            if (key.length < 3 * string.length()) {
+                key = new byte[3 * string.length()];
+                if (key.length <= MAX_SCRATCH) {
+                    SCRATCH.set(key);
+                }
+            }
+            return search(key, encodeUtf8(string, key));
+        }
+        byte[] key = codec.encode((E) element);
+        return search(key, key.length);
+    }
+
+    /**
+     * Searches fixed width record, which is equal to the key as an unsigned number.
+     */
+    private int search(long key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = Long.compareUnsigned(storage.number(middle), key);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private int search(byte[] key, int length) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = storage.compare(middle, key, length);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    /**
+     * Encodes string as {@link Codec#STRING} does.
+     *
+     * @return length of the encoding.
+     * @throws IllegalArgumentException if the string has an unpaired surrogate.
+     */
+    private static int encodeUtf8(String string, byte[] bytes) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | c >> 6);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                bytes[length++] = (byte) (0xE0 | c >> 12);
+                bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                throw new IllegalArgumentException("Unpaired surrogate at " + i);
+            }
+        }
+        return length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    int compare(E first, E second) {
+        Comparator<? super E> comparator = storage.codec.comparator();
+        return comparator == null ? ((Comparable<? super E>) first).compareTo(second) : comparator.compare(first, second);
+    }
+
+    @Override
+    Comparator<? super E> ascendingComparator() {
+        return storage.codec.comparator();
+    }
+
+    @Override
+    MappedArraySet<E> view(int from, int to, boolean descending) {
+        return new MappedArraySet<>(storage, from, to, descending);
+    }
+
+    /**
+     * Mapped file shared by a set and its views.
+     */
+    private record Storage<E>(Codec<E> codec, ByteBuffer[] chunks, int width, int size) {
+        long end() {
+            return recordStart(size);
+        }
+
+        /**
+         * Returns position of the record in the file, records of variable length follow the table of offsets.
+         */
+        private long recordStart(int index) {
+            if (width > 0) {
+                return HEADER_SIZE + (long) index * width;
+            }
+            return HEADER_SIZE + (size + 1L) * Long.BYTES + offset(index);
+        }
+
+        private long offset(int index) {
+            long position = HEADER_SIZE + (long) index * Long.BYTES;
+            return chunk(position).getLong(offsetInChunk(position));
+        }
+
+        private int recordLength(int index) {
+            return width > 0 ? width : (int) (offset(index + 1) - offset(index));
+        }
+
+        private ByteBuffer chunk(long position) {
+            return chunks[(int) (position >>> CHUNK_BITS)];
+        }
+
+        private static int offsetInChunk(long position) {
+            return (int) (position & CHUNK_MASK);
+        }
+
+        byte[] record(int index) {
+            long start = recordStart(index);
+            byte[] record = new byte[recordLength(index)];
+            chunk(start).get(offsetInChunk(start), record);
+            return record;
+        }
+
+        /**
+         * Returns record of width 4 or 8 as an unsigned number.
+         */
+        long number(int index) {
+            long start = recordStart(index);
+            ByteBuffer chunk = chunk(start);
+            return width == Integer.BYTES
+                    ? Integer.toUnsignedLong(chunk.getInt(offsetInChunk(start)))
+                    : chunk.getLong(offsetInChunk(start));
+        }
+
+        /**
+         * Compares record with the first {@code keyLength} bytes of the key by unsigned bytes, eight bytes at once.
+         */
+        int compare(int index, byte[] key, int keyLength) {
+            long start = recordStart(index);
+            int length = recordLength(index);
+            ByteBuffer chunk = chunk(start);
+            int offset = offsetInChunk(start);
+            int common = Math.min(length, keyLength);
+            int i = 0;
+            for (; i + Long.BYTES <= common; i += Long.BYTES) {
+                long record = chunk.getLong(offset + i);
+                long expected = (long) LONGS.get(key, i);
+                if (record != expected) {
+                    return Long.compareUnsigned(record, expected);
+                }
+            }
+            for (; i < common; i++) {
+                int compared = Byte.compareUnsigned(chunk.get(offset + i), key[i]);
+                if (compared != 0) {
+                    return compared;
+                }
+            }
+            return Integer.compare(length, keyLength);
+        }
+    }
+
+    /**
+     * Conversion of elements to records, unsigned lexicographic order of records should be the order of elements.
+     *
+     * @param <E> type of elements.
+     */
+    public interface Codec<E> {
+        /**
+         * Big-endian {@code int} with inverted sign bit, 4 bytes.
+         */
+        Codec<Integer> INT = new Codec<>() {
+            @Override
+            public int width() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public byte[] encode(Integer element) {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(element ^ Integer.MIN_VALUE).array();
+            }
+
+            @Override
+            public Integer decode(byte[] record) {
+                return ByteBuffer.wrap(record).getInt() ^ Integer.MIN_VALUE;
+            }
+
+            @Override
+            public Comparator<? super Integer> comparator() {
+                return null;
+            }
+        };
+
+        /**
+         * Big-endian {@code long} with inverted sign bit, 8 bytes.
+         */
+        Codec<Long> LONG = new Codec<>() {
+            @Override
+            public int width() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public byte[] encode(Long element) {
+                return ByteBuffer.allocate(Long.BYTES).putLong(element ^ Long.MIN_VALUE).array();
+            }
+
+            @Override
+            public Long decode(byte[] record) {
+                return ByteBuffer.wrap(record).getLong() ^ Long.MIN_VALUE;
+            }
+
+            @Override
+            public Comparator<? super Long> comparator() {
+                return null;
+            }
+        };
+
+        /**
+         * UTF-8 bytes of variable length, ordered by code points.
+         * UTF-8 has no encoding of unpaired surrogates, so strings having them are rejected
+         * with {@link IllegalArgumentException} by {@link Builder#add} and by lookups.
+         */
+        Codec<String> STRING = new Codec<>() {
+            @Override
+            public int width() {
+                return 0;
+            }
+
+            @Override
+            public byte[] encode(String element) {
+                try {
+                    // Unlike String.getBytes, reports unpaired surrogates instead of replacing them
+                    ByteBuffer bytes = StandardCharsets.UTF_8.newEncoder().encode(CharBuffer.wrap(element));
+                    return Arrays.copyOf(bytes.array(), bytes.limit());
+                } catch (CharacterCodingException e) {
+                    throw new IllegalArgumentException("Unpaired surrogate in string" + " " + e.getMessage());
+                }
+            }
+
+            @Override
+            public String decode(byte[] record) {
+                return new String(record, StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public Comparator<? super String> comparator() {
+                return (first, second) -> {
+                    int i = 0;
+                    while (i < first.length() && i < second.length()) {
+                        int codePoint = first.codePointAt(i);
+                        int compared = Integer.compare(codePoint, second.codePointAt(i));
+                        if (compared != 0) {
+                            return compared;
+                        }
+                        i += Character.charCount(codePoint);
+                    }
+                    return Integer.compare(first.length() - i, second.length() - i);
+                };
+            }
+        };
+
+        /**
+         * Returns width of records, 0 for records of variable length.
+         *
+         * @return width in bytes.
+         */
+        int width();
+
+        /**
+         * Encodes element.
+         *
+         * @param element element.
+         * @return record of the element.
+         */
+        byte[] encode(E element);
+
+        /**
+         * Decodes element.
+         *
+         * @param record record of an element.
+         * @return element.
+         */
+        E decode(byte[] record);
+
+        /**
+         * Returns comparator consistent with order of records, {@code null} if it is the natural ordering.
+         *
+         * @return comparator of elements.
+         */
+        Comparator<? super E> comparator();
+    }
+
+    /**
+     * Writer of set files. Elements are collected in memory and are sorted and deduplicated when written.
+     *
+     * @param <E> type of elements.
+     */
+    public static class Builder<E> {
+        private final Codec<E> codec;
+        private final List<byte[]> records = new ArrayList<>();
+
+        private Builder(Codec<E> codec) {
+            this.codec = codec;
+        }
+
+        /**
+         * Adds element.
+         *
+         * @param element added element.
+         * @return this builder.
+         * @throws IllegalArgumentException if the element cannot be encoded
+         *                                  or its record does not have the width of the codec.
+         */
+        public Builder<E> add(E element) {
+            byte[] record = codec.encode(element);
+            if (codec.width() > 0 && record.length != codec.width()) {
+                throw new IllegalArgumentException("Expected record of width " + codec.width());
+            }
+            records.add(record);
+            return this;
+        }
+
+        /**
+         * Adds all elements of the collection.
+         *
+         * @param elements added elements.
+         * @return this builder.
+         */
+        public Builder<E> addAll(Collection<? extends E> elements) {
+            elements.forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Writes set to a temporary file, which atomically replaces the target one,
+         * so processes never map a partially written set.
+         *
+         * @param file target file.
+         * @throws IOException if an I/O error occurs.
+         */
+        public void write(Path file) throws IOException {
+            byte[][] sorted = records.toArray(byte[][]::new);
+            Arrays.parallelSort(sorted, Arrays::compareUnsigned);
+            int size = 0;
+            int longest = 0;
+            for (byte[] record : sorted) {
+                if (size == 0 || !Arrays.equals(sorted[size - 1], record)) {
+                    sorted[size++] = record;
+                    longest = Math.max(longest, record.length);
+                }
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // Not closed, closing the stream would close the channel
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(out), 1 << 16));
+                data.writeLong(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(codec.width());
+                data.writeInt(size);
+                data.writeInt(longest);
+                if (codec.width() == 0) {
+                    long offset = 0;
+                    for (int i = 0; i < size; i++) {
+                        data.writeLong(offset);
+                        offset += sorted[i].length;
+                    }
+                    data.writeLong(offset);
+                }
+                for (int i = 0; i < size; i++) {
+                    data.write(sorted[i]);
+                }
+                data.flush();
+                out.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package info.kgeorgiy.ja.kadyrov.arrayset;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mutable sorted set on top of an immutable {@link ArraySet} base.
+ * Changes go to a small sorted buffer of inserted elements and a buffer of removed elements of the base,
+ * reads consult the buffers first and the base then.
+ * When buffers reach {@code 1/16} of the base, but not less than the buffer size, they are frozen
+ * and merged into a new base in the background by a linear merge, while new changes go to fresh buffers.
+ * The base is copied once per {@code n/16} changes, so changes take amortized {@code O(log n)}.
+ * A merge rejected by the executor runs in the calling thread, changes of a failed merge return to the buffers.
+ * Iterators see the set as of their creation and never throw {@link ConcurrentModificationException}.
+ * Instances are thread-safe, {@code null} elements are not permitted.
+ *
+ * @param <E> type of elements.
+ * @author Kadyrov Rustam.
+ */
+public class MutableArraySet<E extends Comparable<? super E>> extends AbstractSet<E> implements SortedSet<E> {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 12;
+    private static final int MERGE_RATIO_BITS = 4;
+
+    private final Comparator<? super E> order;
+    private final int bufferSize;
+    private final Executor executor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held while the base is replaced, is taken before lock
+    private final Lock mergeLock = new ReentrantLock();
+    private ArraySet<E> base;
+    // Buffers being merged, null if there is no pending merge
+    private Layer<E> frozen;
+    private Layer<E> active;
+
+    public MutableArraySet() {
+        this(Collections.emptyList(), Comparator.naturalOrder());
+    }
+
+    public MutableArraySet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public MutableArraySet(Collection<? extends E> collection) {
+        this(collection, Comparator.naturalOrder());
+    }
+
+    public MutableArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(collection, comparator, DEFAULT_BUFFER_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates set.
+     *
+     * @param collection initial elements.
+     * @param comparator order of elements.
+     * @param bufferSize minimal number of buffered changes which are merged into the base.
+     * @param executor   executor of merges.
+     */
+    public MutableArraySet(Collection<? extends E> collection, Comparator<? super E> comparator,
+                           int bufferSize, Executor executor) {
+        this.order = comparator;
+        this.bufferSize = bufferSize;
+        this.executor = executor;
+        this.base = new ArraySet<>(collection, comparator);
+        this.active = newLayer();
+    }
+
+    /**
+     * Changes over the set below: inserted elements are not contained in it, removed elements are.
+     */
+    private record Layer<E>(NavigableSet<E> inserted, NavigableSet<E> removed) {
+        int changes() {
+            return inserted.size() + removed.size();
+        }
+
+        int delta() {
+            return inserted.size() - removed.size();
+        }
+
+        /**
+         * Returns 1 if element is inserted, -1 if it is removed and 0 if it is not changed by this layer.
+         */
+        int state(Object element) {
+            return inserted.contains(element) ? 1 : removed.contains(element) ? -1 : 0;
+        }
+    }
+
+    private Layer<E> newLayer() {
+        return new Layer<>(new TreeSet<>(order), new TreeSet<>(order));
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        lock.readLock().lock();
+        try {
+            return has(element);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean has(Object element) {
+        int state = active.state(element);
+        if (state == 0 && frozen != null) {
+            state = frozen.state(element);
+        }
+        return state == 0 ? base.contains(element) : state > 0;
+    }
+
+    @Override
+    public boolean add(E element) {
+        Objects.requireNonNull(element);
+        boolean merge;
+        lock.writeLock().lock();
+        try {
+            if (has(element)) {
+                return false;
+            }
+            if (!active.removed.remove(element)) {
+                active.inserted.add(element);
+            }
+            merge = freezeIfFull();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleIf(merge);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object element) {
+        Objects.requireNonNull(element);
+        boolean merge;
+        lock.writeLock().lock();
+        try {
+            if (!has(element)) {
+                return false;
+            }
+            if (!active.inserted.remove(element)) {
+                active.removed.add((E) element);
+            }
+            merge = freezeIfFull();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleIf(merge);
+        return true;
+    }
+
+    /**
+     * Freezes buffers, if there is no pending merge and the buffers are full.
+     * Should be called under the write lock.
+     *
+     * @return whether merge should be scheduled.
+     */
+    private boolean freezeIfFull() {
+        if (frozen != null || active.changes() < Math.max(bufferSize, base.size() >>> MERGE_RATIO_BITS)) {
+            return false;
+        }
+        freeze();
+        return true;
+    }
+
+    private void freeze() {
+        frozen = new Layer<>(new ArraySet<>(active.inserted, order), new ArraySet<>(active.removed, order));
+        active = newLayer();
+    }
+
+    // Merges are scheduled outside of the lock, as an executor may run them in place
+    private void scheduleIf(boolean merge) {
+        if (merge) {
+            try {
+                executor.execute(this::merge);
+            } catch (RejectedExecutionException e) {
+                // Frozen buffers would never be merged otherwise
+                merge();
+            }
+        }
+    }
+
+    private void merge() {
+        boolean merge;
+        mergeLock.lock();
+        try {
+            mergeFrozen();
+            lock.writeLock().lock();
+            try {
+                merge = freezeIfFull();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+        scheduleIf(merge);
+    }
+
+    /**
+     * Replaces base with the frozen buffers merged into it. Should be called under the merge lock.
+     * Base and frozen buffers are immutable, so readers are blocked only while the new base is published.
+     */
+    private void mergeFrozen() {
+        ArraySet<E> base;
+        Layer<E> layer;
+        lock.readLock().lock();
+        try {
+            base = this.base;
+            layer = frozen;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (layer == null) {
+            return;
+        }
+        ArraySet<E> merged;
+        try {
+            merged = base.union(layer.inserted).difference(layer.removed);
+        } catch (RuntimeException | Error e) {
+            lock.writeLock().lock();
+            try {
+                unfreeze();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            this.base = merged;
+            frozen = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns frozen changes to the active buffers after a failed merge, so that a later change freezes them again.
+     * Should be called under the write lock.
+     */
+    private void unfreeze() {
+        for (E element : frozen.inserted) {
+            if (!active.removed.remove(element)) {
+                active.inserted.add(element);
+            }
+        }
+        for (E element : frozen.removed) {
+            if (!active.inserted.remove(element)) {
+                active.removed.add(element);
+            }
+        }
+        frozen = null;
+    }
+
+    /**
+     * Merges all changes made before the call into the base in the calling thread.
+     */
+    public void compact() {
+        mergeLock.lock();
+        try {
+            mergeFrozen();
+            lock.writeLock().lock();
+            try {
+                if (frozen == null && active.changes() > 0) {
+                    freeze();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            mergeFrozen();
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        mergeLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                base = new ArraySet<E>(order);
+                frozen = null;
+                active = newLayer();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return base.size() + active.delta() + (frozen == null ? 0 : frozen.delta());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(null, null);
+    }
+
+    private Iterator<E> iterator(E low, E high) {
+        Iterator<E> iterator;
+        lock.readLock().lock();
+        try {
+            iterator = merged(low, high, false, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Iterator<>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return last = iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                MutableArraySet.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Returns iterator over elements in range {@code [low, high)}, {@code null} bounds are absent.
+     * Should be called under the read lock.
+     *
+     * @param snapshot whether active buffers should be copied, so that the iterator outlives the lock.
+     */
+    private Iterator<E> merged(E low, E high, boolean descending, boolean snapshot) {
+        Comparator<? super E> comparator = descending ? Collections.reverseOrder(order) : order;
+        Iterator<E> iterator = iterator(base, low, high, descending, false);
+        if (frozen != null) {
+            iterator = new LayerIterator<>(iterator, iterator(frozen.inserted, low, high, descending, false),
+                    iterator(frozen.removed, low, high, descending, false), comparator);
+        }
+        return new LayerIterator<>(iterator, iterator(active.inserted, low, high, descending, snapshot),
+                iterator(active.removed, low, high, descending, snapshot), comparator);
+    }
+
+    private Iterator<E> iterator(NavigableSet<E> set, E low, E high, boolean descending, boolean copy) {
+        NavigableSet<E> range = range(set, low, high);
+        if (copy) {
+            range = new ArraySet<>(range, order);
+        }
+        return descending ? range.descendingIterator() : range.iterator();
+    }
+
+    private static <E> NavigableSet<E> range(NavigableSet<E> set, E low, E high) {
+        NavigableSet<E> range = set;
+        if (low != null) {
+            range = range.tailSet(low, true);
+        }
+        if (high != null) {
+            range = range.headSet(high, false);
+        }
+        return range;
+    }
+
+    /**
+     * Returns change of the number of elements in range {@code [low, high)} made by the layer.
+     */
+    private static <E> int delta(Layer<E> layer, E low, E high) {
+        return range(layer.inserted, low, high).size() - range(layer.removed, low, high).size();
+    }
+
+    private E edge(E low, E high, boolean descending) {
+        lock.readLock().lock();
+        try {
+            Iterator<E> iterator = merged(low, high, descending, false);
+            if (!iterator.hasNext()) {
+                throw new NoSuchElementException(descending ? "No highest element." : "No lowest element.");
+            }
+            return iterator.next();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public E first() {
+        return edge(null, null, false);
+    }
+
+    @Override
+    public E last() {
+        return edge(null, null, true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return base.comparator();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        if (order.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("First element greater than second element");
+        }
+        return new Range(Objects.requireNonNull(fromElement), Objects.requireNonNull(toElement));
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new Range(null, Objects.requireNonNull(toElement));
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new Range(Objects.requireNonNull(fromElement), null);
+    }
+
+    /**
+     * Merges the set below a layer with its changes, both in the same order.
+     */
+    private static class LayerIterator<E> implements Iterator<E> {
+        private final Iterator<E> below;
+        private final Iterator<E> inserted;
+        private final Iterator<E> removed;
+        private final Comparator<? super E> comparator;
+        private E nextBelow;
+        private E nextInserted;
+        private E nextRemoved;
+
+        LayerIterator(Iterator<E> below, Iterator<E> inserted, Iterator<E> removed, Comparator<? super E> comparator) {
+            this.below = below;
+            this.inserted = inserted;
+            this.removed = removed;
+            this.comparator = comparator;
+            nextRemoved = nextOrNull(removed);
+            nextInserted = nextOrNull(inserted);
+            nextBelow = nextPresent();
+        }
+
+        private static <E> E nextOrNull(Iterator<E> iterator) {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        /**
+         * Returns next element below, which is not removed. Removed elements are in the same order, so they are
+         * skipped in one pass.
+         */
+        private E nextPresent() {
+            while (below.hasNext()) {
+                E element = below.next();
+                while (nextRemoved != null && comparator.compare(nextRemoved, element) < 0) {
+                    nextRemoved = nextOrNull(removed);
+                }
+                if (nextRemoved == null || comparator.compare(nextRemoved, element) != 0) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextBelow != null || nextInserted != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E element;
+            if (nextInserted == null || nextBelow != null && comparator.compare(nextBelow, nextInserted) < 0) {
+                element = nextBelow;
+                nextBelow = nextPresent();
+            } else {
+                element = nextInserted;
+                nextInserted = nextOrNull(inserted);
+            }
+            return element;
+        }
+    }
+
+    /**
+     * View of the set in range {@code [low, high)}, {@code null} bounds are absent.
+     */
+    private class Range extends AbstractSet<E> implements SortedSet<E> {
+        private final E low;
+        private final E high;
+
+        Range(E low, E high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean inRange(Object element) {
+            E e = (E) element;
+            return (low == null || order.compare(low, e) <= 0) && (high == null || order.compare(e, high) < 0);
+        }
+
+        private E checkBound(E element) {
+            if (low != null && order.compare(element, low) < 0 || high != null && order.compare(element, high) > 0) {
+                throw new IllegalArgumentException("Bound is out of range");
+            }
+            return element;
+        }
+
+        @Override
+        public boolean contains(Object element) {
+            return inRange(Objects.requireNonNull(element)) && MutableArraySet.this.contains(element);
+        }
+
+        @Override
+        public boolean add(E element) {
+            if (!inRange(Objects.requireNonNull(element))) {
+                throw new IllegalArgumentException("Element is out of range");
+            }
+            return MutableArraySet.this.add(element);
+        }
+
+        @Override
+        public boolean remove(Object element) {
+            return inRange(Objects.requireNonNull(element)) && MutableArraySet.this.remove(element);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return MutableArraySet.this.iterator(low, high);
+        }
+
+        /**
+         * Counts elements of the range by ranks in the base and in the frozen buffers,
+         * so it takes {@code O(log n)} plus the number of active buffered changes in the range.
+         */
+        @Override
+        public int size() {
+            lock.readLock().lock();
+            try {
+                int size = range(base, low, high).size() + delta(active, low, high);
+                return frozen == null ? size : size + delta(frozen, low, high);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            lock.readLock().lock();
+            try {
+                return !merged(low, high, false, false).hasNext();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public E first() {
+            return edge(low, high, false);
+        }
+
+        @Override
+        public E last() {
+            return edge(low, high, true);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return MutableArraySet.this.comparator();
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            if (order.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("First element greater than second element");
+            }
+            return new Range(checkBound(fromElement), checkBound(toElement));
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return new Range(low, checkBound(toElement));
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return new Range(checkBound(fromElement), high);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package info.kgeorgiy.ja.kadyrov.arrayset.tests;
+
+import info.kgeorgiy.ja.kadyrov.arrayset.ArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.CompressedIntArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.DoubleArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.FrontCodedArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.IntArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.LongArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.MappedArraySet;
+import info.kgeorgiy.ja.kadyrov.arrayset.MutableArraySet;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ArraySetTest {
+    private final static int SIZE = 1000;
+    private final static int PROBES = 200;
+    private final static int DEPTH = 3;
+    private final static Random RANDOM = new Random(3239);
+
+    @Test
+    public void test1() {
+        System.err.println("test_1::int_array_set.");
+        for (int size : new int[]{0, 1, 2, 10, SIZE}) {
+            int[] values = RANDOM.ints(size, -size - 1, size + 1).toArray();
+            IntArraySet set = new IntArraySet(values);
+            TreeSet<Integer> expected = new TreeSet<>(Arrays.stream(values).boxed().toList());
+            checkNavigable(expected, set, i -> RANDOM.nextInt(-size - 1, size + 2), DEPTH);
+            for (int i = 0; i < PROBES; i++) {
+                int probe = RANDOM.nextInt(-size - 1, size + 2);
+                Assert.assertEquals(expected.contains(probe), set.contains(probe));
+                Assert.assertEquals(Optional.ofNullable(expected.floor(probe)), boxed(set.floor(probe)));
+                Assert.assertEquals(Optional.ofNullable(expected.ceiling(probe)), boxed(set.ceiling(probe)));
+                Assert.assertEquals(Optional.ofNullable(expected.lower(probe)), boxed(set.lower(probe)));
+                Assert.assertEquals(Optional.ofNullable(expected.higher(probe)), boxed(set.higher(probe)));
+            }
+            Assert.assertEquals(expected, new IntArraySet(expected));
+        }
+        System.err.println("test_1::complete!");
+    }
+
+    @Test
+    public void test2() {
+        System.err.println("test_2::long_array_set.");
+        long[] values = RANDOM.longs(SIZE, Long.MIN_VALUE / 2, Long.MAX_VALUE / 2).toArray();
+        values[0] = values[1];
+        LongArraySet set = new LongArraySet(values);
+        TreeSet<Long> expected = new TreeSet<>(Arrays.stream(values).boxed().toList());
+        Assert.assertEquals(SIZE - 1, set.size());
+        checkNavigable(expected, set, i -> i % 2 == 0 ? values[i % SIZE] : RANDOM.nextLong(), DEPTH);
+        Assert.assertTrue(set.contains(values[3]));
+        Assert.assertEquals(values[3], set.floor(values[3]).orElseThrow());
+        System.err.println("test_2::complete!");
+    }
+
+    @Test
+    public void test3() {
+        System.err.println("test_3::double_array_set.");
+        double[] values = RANDOM.doubles(SIZE).toArray();
+        values[0] = Double.NaN;
+        values[1] = -0.0;
+        values[2] = 0.0;
+        values[3] = Double.NaN;
+        DoubleArraySet set = new DoubleArraySet(values);
+        TreeSet<Double> expected = new TreeSet<>(Arrays.stream(values).boxed().toList());
+        Assert.assertEquals(expected.size(), set.size());
+        checkNavigable(expected, set, i -> i % 2 == 0 ? values[i % SIZE] : RANDOM.nextDouble(), DEPTH);
+        Assert.assertTrue(set.contains(Double.NaN));
+        Assert.assertEquals(-0.0, set.lower(0.0).orElseThrow(), 0);
+        System.err.println("test_3::complete!");
+    }
+
+    @Test
+    public void test4() {
+        System.err.println("test_4::array_set_natural_order.");
+        for (int size : new int[]{0, 1, 2, 10, SIZE}) {
+            List<Integer> values = RANDOM.ints(size, -size - 1, size + 1).boxed().toList();
+            checkNavigable(new TreeSet<>(values), new ArraySet<>(values), i -> RANDOM.nextInt(-size - 2, size + 2), DEPTH);
+        }
+        Assert.assertNull(new ArraySet<>(List.of(1, 2)).comparator());
+        System.err.println("test_4::complete!");
+    }
+
+    @Test
+    public void test5() {
+        System.err.println("test_5::array_set_comparator.");
+        Comparator<String> comparator = Comparator.comparing(String::length).thenComparing(Comparator.reverseOrder());
+        List<String> values = RANDOM.ints(SIZE, 0, SIZE * 10).mapToObj(Integer::toString).toList();
+        TreeSet<String> expected = new TreeSet<>(comparator);
+        expected.addAll(values);
+        ArraySet<String> actual = new ArraySet<>(values, comparator);
+        checkNavigable(expected, actual, i -> Integer.toString(RANDOM.nextInt(SIZE * 10)), DEPTH);
+        Assert.assertEquals(comparator, actual.comparator());
+        Assert.assertEquals(List.copyOf(expected.descendingSet().headSet("5", true).tailSet("37", false)),
+                List.copyOf(actual.descendingSet().headSet("5", true).tailSet("37", false)));
+        System.err.println("test_5::complete!");
+    }
+
+    @Test
+    public void test6() {
+        System.err.println("test_6::eytzinger_layout.");
+        for (int size : new int[]{0, 1, 2, 3, 7, 8, 100, SIZE}) {
+            List<Integer> values = RANDOM.ints(size, -size - 1, size + 1).boxed().toList();
+            TreeSet<Integer> expected = new TreeSet<>(values);
+            ArraySet<Integer> set = new ArraySet<>(values, Comparator.reverseOrder()).withEytzingerLayout();
+            checkNavigable(expected.descendingSet(), set, i -> RANDOM.nextInt(-size - 2, size + 2), DEPTH);
+            Assert.assertTrue(set == set.withEytzingerLayout());
+            IntArraySet ints = new IntArraySet(expected).withEytzingerLayout();
+            checkNavigable(expected, ints, i -> RANDOM.nextInt(-size - 2, size + 2), DEPTH);
+            IntArraySet view = ints.subSet(-size / 2, size / 2).withEytzingerLayout();
+            NavigableSet<Integer> expectedView = expected.subSet(-size / 2, true, size / 2, false);
+            for (int i = 0; i < PROBES; i++) {
+                int probe = RANDOM.nextInt(-size - 2, size + 2);
+                Assert.assertEquals(expectedView.contains(probe), view.contains(probe));
+                Assert.assertEquals(Optional.ofNullable(expectedView.floor(probe)), boxed(view.floor(probe)));
+                Assert.assertEquals(Optional.ofNullable(expectedView.higher(probe)), boxed(view.higher(probe)));
+            }
+        }
+        System.err.println("test_6::complete!");
+    }
+
+    @Test
+    public void test7() {
+        System.err.println("test_7::set_algebra.");
+        for (int[] sizes : new int[][]{{0, 0}, {0, 10}, {10, 0}, {SIZE, SIZE}, {SIZE * 10, 10}, {3, SIZE * 10}}) {
+            List<Integer> left = RANDOM.ints(sizes[0], 0, SIZE * 5).boxed().toList();
+            List<Integer> right = RANDOM.ints(sizes[1], 0, SIZE * 5).boxed().toList();
+            ArraySet<Integer> set = new ArraySet<>(left);
+            for (Collection<Integer> other : List.of(new ArraySet<>(right), right,
+                    new ArraySet<>(right, Comparator.reverseOrder()))) {
+                checkAlgebra(new TreeSet<>(left), set, new TreeSet<>(right), other);
+            }
+            NavigableSet<Integer> expected = new TreeSet<>(left).subSet(SIZE, true, SIZE * 3, false).descendingSet();
+            NavigableSet<Integer> expectedOther = new TreeSet<>(right).headSet(SIZE * 2, true);
+            checkAlgebra(expected, set.subSet(SIZE, SIZE * 3).descendingSet(),
+                    expectedOther, new ArraySet<>(right).headSet(SIZE * 2, true));
+        }
+        System.err.println("test_7::complete!");
+    }
+
+    @Test
+    public void test8() {
+        System.err.println("test_8::construction.");
+        int[] comparisons = new int[1];
+        Comparator<Integer> counting = (a, b) -> {
+            comparisons[0]++;
+            return Integer.compare(a, b);
+        };
+        List<Integer> sorted = RANDOM.ints(SIZE, 0, SIZE * 10).sorted().distinct().boxed().toList();
+        new ArraySet<>(sorted, counting);
+        Assert.assertEquals(sorted.size() - 1, comparisons[0]);
+
+        List<Integer> duplicates = RANDOM.ints(SIZE, 0, SIZE / 10).sorted().boxed().toList();
+        Assert.assertEquals(List.copyOf(new TreeSet<>(duplicates)), List.copyOf(new ArraySet<>(duplicates)));
+        for (int size : new int[]{0, 1, 2, SIZE, 100_000}) {
+            List<Integer> values = RANDOM.ints(size, 0, size + 1).boxed().toList();
+            checkNavigable(new TreeSet<>(values).descendingSet(), new ArraySet<>(values, Comparator.reverseOrder()),
+                    i -> RANDOM.nextInt(size + 2), 0);
+        }
+        System.err.println("test_8::complete!");
+    }
+
+    @Test
+    public void test9() throws IOException {
+        System.err.println("test_9::mapped_array_set.");
+        Path dir = Files.createTempDirectory("mapped-array-set");
+        try {
+            for (int size : new int[]{0, 1, SIZE * 10}) {
+                List<Long> longs = RANDOM.longs(size).boxed().toList();
+                Path file = dir.resolve("longs-" + size);
+                MappedArraySet.builder(MappedArraySet.Codec.LONG).addAll(longs).write(file);
+                MappedArraySet<Long> set = MappedArraySet.open(file, MappedArraySet.Codec.LONG);
+                checkNavigable(new TreeSet<>(longs), set,
+                        i -> i % 2 == 0 && size > 0 ? longs.get(i % size) : RANDOM.nextLong(), DEPTH);
+
+                List<Integer> ints = RANDOM.ints(size).boxed().toList();
+                Path intFile = dir.resolve("ints-" + size);
+                MappedArraySet.builder(MappedArraySet.Codec.INT).addAll(ints).add(Integer.MIN_VALUE).write(intFile);
+                MappedArraySet<Integer> intSet = MappedArraySet.open(intFile, MappedArraySet.Codec.INT);
+                TreeSet<Integer> expectedInts = new TreeSet<>(ints);
+                expectedInts.add(Integer.MIN_VALUE);
+                checkNavigable(expectedInts, intSet,
+                        i -> i % 2 == 0 && size > 0 ? ints.get(i % size) : RANDOM.nextInt(), DEPTH);
+            }
+
+            List<String> strings = new ArrayList<>(List.of("", "a", "ab", "😀", "￿", "é", "abc", "?"));
+            RANDOM.ints(SIZE, 0, SIZE * 10).mapToObj(Integer::toString).forEach(strings::add);
+            Path file = dir.resolve("strings");
+            MappedArraySet.builder(MappedArraySet.Codec.STRING).addAll(strings).add("a").write(file);
+            MappedArraySet<String> set = MappedArraySet.open(file, MappedArraySet.Codec.STRING);
+            TreeSet<String> expected = new TreeSet<>(MappedArraySet.Codec.STRING.comparator());
+            expected.addAll(strings);
+            checkNavigable(expected, set, i -> i % 2 == 0 ? strings.get(i % strings.size()) : "x" + i, DEPTH);
+            Assert.assertEquals("😀", set.last());
+            // UTF-8 cannot encode unpaired surrogates, they must not match the replacement '?'
+            for (String malformed : List.of("\uD800", "a\uDC00", "\uDE00\uD83D")) {
+                assertThrows(IllegalArgumentException.class, () -> set.contains(malformed));
+                assertThrows(IllegalArgumentException.class, () -> set.ceiling(malformed));
+                assertThrows(IllegalArgumentException.class, () -> MappedArraySet.builder(MappedArraySet.Codec.STRING).add(malformed));
+            }
+
+            try {
+                MappedArraySet.open(file, MappedArraySet.Codec.INT);
+                Assert.fail("Expected IOException");
+            } catch (IOException e) {
+                System.err.println("test_9::expected " + e.getMessage());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path path : files.toList()) {
+                    Files.delete(path);
+                }
+            }
+            Files.delete(dir);
+        }
+        System.err.println("test_9::complete!");
+    }
+
+    @Test
+    public void test10() {
+        System.err.println("test_10::mutable_array_set.");
+        for (Executor executor : List.<Executor>of(Runnable::run, ForkJoinPool.commonPool())) {
+            List<Integer> initial = RANDOM.ints(SIZE, 0, SIZE * 2).boxed().toList();
+            TreeSet<Integer> expected = new TreeSet<>(Comparator.reverseOrder());
+            expected.addAll(initial);
+            MutableArraySet<Integer> set = new MutableArraySet<>(initial, Comparator.reverseOrder(), 16, executor);
+            for (int i = 0; i < SIZE * 20; i++) {
+                int element = RANDOM.nextInt(SIZE * 2);
+                if (RANDOM.nextBoolean()) {
+                    Assert.assertEquals(expected.add(element), set.add(element));
+                } else {
+                    Assert.assertEquals(expected.remove(element), set.remove(element));
+                }
+                if (i % SIZE == 0) {
+                    checkSorted(expected, set);
+                    int low = Math.max(expected.first(), expected.last());
+                    int high = RANDOM.nextInt(SIZE * 2);
+                    checkSorted(expected.subSet(low, high), set.subSet(low, high));
+                    checkSorted(expected.headSet(high), set.headSet(high));
+                    checkSorted(expected.tailSet(high).headSet(high / 2), set.tailSet(high).headSet(high / 2));
+                }
+            }
+            set.compact();
+            checkSorted(expected, set);
+
+            Iterator<Integer> iterator = set.iterator();
+            set.add(-1);
+            expected.add(-1);
+            iterator.next();
+            iterator.remove();
+            expected.remove(expected.first());
+            checkSorted(expected, set);
+            set.headSet(SIZE).clear();
+            expected.headSet(SIZE).clear();
+            checkSorted(expected, set);
+            set.clear();
+            Assert.assertTrue(set.isEmpty());
+        }
+        System.err.println("test_10::complete!");
+    }
+
+    @Test
+    public void test11() {
+        System.err.println("test_11::compressed_sets.");
+        List<int[]> inputs = List.of(
+                new int[0],
+                new int[]{Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE},
+                IntStream.range(-SIZE, SIZE * 3).toArray(),
+                RANDOM.ints(SIZE * 5, 0, SIZE * 6).toArray(),
+                RANDOM.ints(SIZE * 5).toArray()
+        );
+        for (int[] values : inputs) {
+            CompressedIntArraySet set = new CompressedIntArraySet(values);
+            TreeSet<Integer> expected = new TreeSet<>(Arrays.stream(values).boxed().toList());
+            checkNavigable(expected, set,
+                    i -> i % 2 == 0 && values.length > 0 ? values[i % values.length] : RANDOM.nextInt(), DEPTH);
+            for (int i = 0; i < PROBES; i++) {
+                int probe = i % 2 == 0 && values.length > 0 ? values[i % values.length] + 1 : RANDOM.nextInt();
+                Assert.assertEquals(expected.contains(probe), set.contains(probe));
+                Assert.assertEquals(Optional.ofNullable(expected.floor(probe)), boxed(set.floor(probe)));
+                Assert.assertEquals(Optional.ofNullable(expected.higher(probe)), boxed(set.higher(probe)));
+            }
+        }
+
+        // Unpaired surrogates are not valid UTF-16, but are valid strings
+        List<String> strings = new ArrayList<>(List.of("", "a", "😀", "😁x", "￿",
+                "\uD83D", "\uD83Dx", "\uDE00", "a\uD800", "a\uD800b", "é", "é\uDC00", "\u07FF\u0800"));
+        RANDOM.ints(SIZE * 2, 0, SIZE * 100).mapToObj(i -> "/home/user/projects/" + i + "/src/Main.java")
+                .forEach(strings::add);
+        checkNavigable(new TreeSet<>(strings), new FrontCodedArraySet(strings),
+                i -> i % 2 == 0 ? strings.get(i % strings.size()) : "/home/user/projects/" + i, DEPTH);
+        System.err.println("test_11::complete!");
+    }
+
+    @Test
+    public void test12() {
+        System.err.println("test_12::spliterators.");
+        int[] values = RANDOM.ints(SIZE * 10, -SIZE * 20, SIZE * 20).toArray();
+        TreeSet<Integer> expected = new TreeSet<>(Arrays.stream(values).boxed().toList());
+        List<NavigableSet<Integer>> sets = List.of(
+                new ArraySet<>(expected),
+                new ArraySet<>(expected).withEytzingerLayout(),
+                new IntArraySet(values),
+                new CompressedIntArraySet(values)
+        );
+        for (NavigableSet<Integer> set : sets) {
+            checkSpliterator(expected, set);
+            checkSpliterator(expected.descendingSet(), set.descendingSet());
+            checkSpliterator(expected.subSet(-SIZE, true, SIZE, false), set.subSet(-SIZE, true, SIZE, false));
+            checkSpliterator(expected.headSet(0, true).descendingSet(), set.headSet(0, true).descendingSet());
+        }
+
+        IntArraySet ints = new IntArraySet(values);
+        Assert.assertEquals(expected.stream().mapToLong(Integer::longValue).sum(),
+                ints.intStream().parallel().asLongStream().sum());
+        Assert.assertArrayEquals(expected.descendingSet().stream().mapToInt(Integer::intValue).toArray(),
+                ints.descendingSet().intStream().parallel().toArray());
+        long[] longs = Arrays.stream(values).asLongStream().map(v -> v * SIZE * SIZE * SIZE).toArray();
+        Assert.assertArrayEquals(Arrays.stream(longs).sorted().distinct().toArray(),
+                new LongArraySet(longs).longStream().parallel().toArray());
+        double[] doubles = Arrays.stream(values).asDoubleStream().map(v -> v / 8.0).toArray();
+        Assert.assertArrayEquals(Arrays.stream(doubles).sorted().distinct().toArray(),
+                new DoubleArraySet(doubles).doubleStream().parallel().toArray(), 0);
+        System.err.println("test_12::complete!");
+    }
+
+    @Test
+    public void test13() throws ReflectiveOperationException {
+        System.err.println("test_13::eytzinger_largest_tree.");
+        Method lowerBound = Class.forName("info.kgeorgiy.ja.kadyrov.arrayset.Eytzinger")
+                .getDeclaredMethod("lowerBound", long.class);
+        lowerBound.setAccessible(true);
+        // Descents of a tree with as many nodes as an array may have, children of the last levels overflow int
+        for (int i = 0; i < PROBES; i++) {
+            long node = 1;
+            int expected = 0;
+            while (node < Integer.MAX_VALUE) {
+                boolean right = i == 1 || i > 1 && RANDOM.nextBoolean();
+                if (!right) {
+                    expected = (int) node;
+                }
+                node = 2 * node + (right ? 1 : 0);
+            }
+            Assert.assertEquals(expected, lowerBound.invoke(null, node));
+        }
+        System.err.println("test_13::complete!");
+    }
+
+    @Test
+    public void test14() {
+        System.err.println("test_14::mutable_array_set_failed_merges.");
+        // Every other merge fails once its comparator is first called, rejected merges run in place
+        AtomicBoolean failing = new AtomicBoolean();
+        Comparator<Integer> comparator = (first, second) -> {
+            if (failing.getAndSet(false)) {
+                throw new IllegalStateException("Merge failed");
+            }
+            return Integer.compare(first, second);
+        };
+        AtomicInteger merges = new AtomicInteger();
+        Executor failingExecutor = task -> {
+            failing.set(merges.getAndIncrement() % 2 == 0);
+            try {
+                task.run();
+            } catch (IllegalStateException ignored) {
+                // Changes of the failed merge are merged by a later one
+            } finally {
+                failing.set(false);
+            }
+        };
+        Executor rejectingExecutor = task -> {
+            merges.incrementAndGet();
+            throw new RejectedExecutionException();
+        };
+        for (Executor executor : List.of(failingExecutor, rejectingExecutor)) {
+            merges.set(0);
+            TreeSet<Integer> expected = new TreeSet<>();
+            MutableArraySet<Integer> set = new MutableArraySet<>(List.of(), comparator, 16, executor);
+            for (int i = 0; i < SIZE * 20; i++) {
+                int element = RANDOM.nextInt(SIZE * 2);
+                if (RANDOM.nextBoolean()) {
+                    Assert.assertEquals(expected.add(element), set.add(element));
+                } else {
+                    Assert.assertEquals(expected.remove(element), set.remove(element));
+                }
+                if (i % SIZE == 0) {
+                    checkSorted(expected, set);
+                    int low = RANDOM.nextInt(SIZE);
+                    int high = low + RANDOM.nextInt(SIZE);
+                    Assert.assertEquals(expected.subSet(low, high).size(), set.subSet(low, high).size());
+                }
+            }
+            // Merges go on after a failure
+            Assert.assertTrue("Merges stopped after " + merges.get(), merges.get() > 10);
+            checkSorted(expected, set);
+        }
+        System.err.println("test_14::complete!");
+    }
+
+    private static void checkSpliterator(NavigableSet<Integer> expected, NavigableSet<Integer> set) {
+        Spliterator<Integer> spliterator = set.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT
+                | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        Assert.assertEquals(set.comparator(), spliterator.getComparator());
+        Assert.assertEquals(expected.size(), spliterator.getExactSizeIfKnown());
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        if (expected.size() >= 2) {
+            Assert.assertNotNull(prefix);
+            Assert.assertEquals(expected.size(), prefix.estimateSize() + spliterator.estimateSize());
+            List<Integer> actual = new ArrayList<>();
+            prefix.forEachRemaining(actual::add);
+            spliterator.tryAdvance(actual::add);
+            spliterator.forEachRemaining(actual::add);
+            Assert.assertEquals(List.copyOf(expected), actual);
+        }
+        Assert.assertEquals(List.copyOf(expected), set.parallelStream().toList());
+        Assert.assertEquals(expected.stream().mapToLong(Integer::longValue).sum(),
+                set.parallelStream().mapToLong(Integer::longValue).sum());
+    }
+
+    private static void checkSorted(SortedSet<Integer> expected, SortedSet<Integer> actual) {
+        Assert.assertEquals(List.copyOf(expected), List.copyOf(actual));
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected.isEmpty(), actual.isEmpty());
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(expected.first(), actual.first());
+            Assert.assertEquals(expected.last(), actual.last());
+        }
+        for (int i = 0; i < PROBES; i++) {
+            int probe = RANDOM.nextInt(-1, SIZE * 2 + 1);
+            Assert.assertEquals(expected.contains(probe), actual.contains(probe));
+        }
+    }
+
+    private static void checkAlgebra(NavigableSet<Integer> expected, ArraySet<Integer> set,
+                                     NavigableSet<Integer> expectedOther, Collection<Integer> other) {
+        TreeSet<Integer> union = new TreeSet<>(expected.comparator());
+        union.addAll(expected);
+        union.addAll(expectedOther);
+        TreeSet<Integer> intersection = new TreeSet<>(union);
+        intersection.retainAll(expected);
+        intersection.retainAll(expectedOther);
+        TreeSet<Integer> difference = new TreeSet<>(expected);
+        difference.removeAll(expectedOther);
+        TreeSet<Integer> symmetricDifference = new TreeSet<>(union);
+        symmetricDifference.removeAll(intersection);
+        Assert.assertEquals(List.copyOf(union), List.copyOf(set.union(other)));
+        Assert.assertEquals(List.copyOf(intersection), List.copyOf(set.intersection(other)));
+        Assert.assertEquals(List.copyOf(difference), List.copyOf(set.difference(other)));
+        Assert.assertEquals(List.copyOf(symmetricDifference), List.copyOf(set.symmetricDifference(other)));
+    }
+
+    private static <E> void checkNavigable(NavigableSet<E> expected, NavigableSet<E> actual,
+                                           IntFunction<E> probes, int depth) {
+        Assert.assertEquals(List.copyOf(expected), List.copyOf(actual));
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(expected.hashCode(), actual.hashCode());
+        Assert.assertEquals(List.copyOf(expected.descendingSet()), toList(actual.descendingIterator()));
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(expected.first(), actual.first());
+            Assert.assertEquals(expected.last(), actual.last());
+        }
+        for (int i = 0; i < PROBES; i++) {
+            E probe = probes.apply(i);
+            Assert.assertEquals(expected.contains(probe), actual.contains(probe));
+            Assert.assertEquals(expected.lower(probe), actual.lower(probe));
+            Assert.assertEquals(expected.floor(probe), actual.floor(probe));
+            Assert.assertEquals(expected.ceiling(probe), actual.ceiling(probe));
+            Assert.assertEquals(expected.higher(probe), actual.higher(probe));
+        }
+        if (depth == 0 || expected.isEmpty()) {
+            return;
+        }
+        checkNavigable(expected.descendingSet(), actual.descendingSet(), probes, depth - 1);
+        Comparator<? super E> comparator = Objects.requireNonNullElse(expected.comparator(), naturalOrder());
+        // TreeSet views reject bounds outside of their range
+        List<E> elements = List.copyOf(expected);
+        E first = elements.get(RANDOM.nextInt(elements.size()));
+        E second = elements.get(RANDOM.nextInt(elements.size()));
+        E low = comparator.compare(first, second) <= 0 ? first : second;
+        E high = low == first ? second : first;
+        boolean lowInclusive = RANDOM.nextBoolean();
+        boolean highInclusive = RANDOM.nextBoolean();
+        checkView(expected, actual, set -> set.subSet(low, lowInclusive, high, highInclusive), probes, depth);
+        checkView(expected, actual, set -> set.headSet(high, highInclusive), probes, depth);
+        checkView(expected, actual, set -> set.tailSet(low, lowInclusive), probes, depth);
+        Assert.assertEquals(List.copyOf(expected.subSet(low, high)), List.copyOf(actual.subSet(low, high)));
+        Assert.assertEquals(List.copyOf(expected.headSet(high)), List.copyOf(actual.headSet(high)));
+        Assert.assertEquals(List.copyOf(expected.tailSet(low)), List.copyOf(actual.tailSet(low)));
+        if (comparator.compare(low, high) != 0) {
+            assertThrows(IllegalArgumentException.class, () -> actual.subSet(high, low));
+        }
+    }
+
+    private static <E> void checkView(NavigableSet<E> expected, NavigableSet<E> actual,
+                                      Function<NavigableSet<E>, NavigableSet<E>> view,
+                                      IntFunction<E> probes, int depth) {
+        checkNavigable(view.apply(expected), view.apply(actual), probes, depth - 1);
+    }
+
+    private static <E> List<E> toList(Iterator<E> iterator) {
+        List<E> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Comparator<E> naturalOrder() {
+        return (Comparator<E>) Comparator.naturalOrder();
+    }
+
+    private static void assertThrows(Class<? extends Exception> type, Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            Assert.assertEquals(type, e.getClass());
+            return;
+        }
+        Assert.fail("Expected " + type.getSimpleName());
+    }
+
+    private static Optional<Integer> boxed(OptionalInt value) {
+        return value.isPresent() ? Optional.of(value.getAsInt()) : Optional.empty();
+    }
+}
@@ -0,0 +1,229 @@
+package info.kgeorgiy.ja.kadyrov.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Minimal benchmark harness.
+ * Every benchmark is run for a number of warmup iterations, which are discarded,
+ * and then for a number of measured iterations. Each iteration repeats the workload
+ * until it took at least the minimal iteration time, and yields throughput of the iteration.
+ * Results are printed as they are measured and can be written as JSON or CSV,
+ * so that runs can be compared by scripts.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class Harness {
+    private final int warmup;
+    private final int iterations;
+    private final long minIterationNanos;
+    private final PrintStream log;
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * Creates harness.
+     *
+     * @param warmup            number of discarded iterations.
+     * @param iterations        number of measured iterations.
+     * @param minIterationNanos minimal duration of an iteration.
+     * @param log               stream for measured results, usually {@code System.out}.
+     */
+    public Harness(int warmup, int iterations, long minIterationNanos, PrintStream log) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Expected at least one measured iteration");
+        }
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.minIterationNanos = minIterationNanos;
+        this.log = log;
+    }
+
+    /**
+     * Measures throughput of the workload.
+     *
+     * @param benchmark  name of the benchmark.
+     * @param params     parameters of the benchmark, in the order they are reported.
+     * @param unit       unit of throughput, per second.
+     * @param unitsPerOp number of units processed by one run of the workload.
+     * @param workload   measured workload.
+     * @return measured result.
+     * @throws Exception if workload fails.
+     */
+    public Result run(String benchmark, Map<String, String> params, String unit, double unitsPerOp,
+                      Workload workload) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            iteration(workload, unitsPerOp);
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = iteration(workload, unitsPerOp);
+        }
+        Result result = Result.of(benchmark, new LinkedHashMap<>(params), unit, scores);
+        results.add(result);
+        log.println(result);
+        return result;
+    }
+
+    private double iteration(Workload workload, double unitsPerOp) throws Exception {
+        long start = System.nanoTime();
+        long ops = 0;
+        long elapsed;
+        do {
+            workload.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < minIterationNanos);
+        return ops * unitsPerOp / (elapsed / 1e9);
+    }
+
+    /**
+     * Returns results measured so far.
+     *
+     * @return list of results.
+     */
+    public List<Result> results() {
+        return List.copyOf(results);
+    }
+
+    /**
+     * Writes results as a JSON array of objects.
+     *
+     * @param file output file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeJson(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write("  " + results.get(i).toJson());
+                writer.write(i + 1 < results.size() ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        }
+    }
+
+    /**
+     * Writes results as CSV with a header line, parameters are joined as {@code name=value;...}.
+     *
+     * @param file output file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("benchmark,params,unit,score,error,min,max,samples\n");
+            for (Result result : results) {
+                writer.write(result.toCsv());
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Measured code.
+     */
+    @FunctionalInterface
+    public interface Workload {
+        /**
+         * Runs the workload once.
+         *
+         * @throws Exception if workload fails.
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Throughput of a benchmark: mean, standard deviation, minimum and maximum over measured iterations.
+     *
+     * @param benchmark name of the benchmark.
+     * @param params    parameters of the benchmark.
+     * @param unit      unit of throughput, per second.
+     * @param score     mean throughput.
+     * @param error     standard deviation of throughput.
+     * @param min       minimal throughput.
+     * @param max       maximal throughput.
+     * @param samples   number of measured iterations.
+     */
+    public record Result(String benchmark, Map<String, String> params, String unit,
+                         double score, double error, double min, double max, int samples) {
+        private static Result of(String benchmark, Map<String, String> params, String unit, double[] scores) {
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double score : scores) {
+                sum += score;
+                min = Math.min(min, score);
+                max = Math.max(max, score);
+            }
+            double mean = sum / scores.length;
+            double squares = 0;
+            for (double score : scores) {
+                squares += (score - mean) * (score - mean);
+            }
+            double error = scores.length > 1 ? Math.sqrt(squares / (scores.length - 1)) : 0;
+            return new Result(benchmark, params, unit, mean, error, min, max, scores.length);
+        }
+
+        private String joinedParams() {
+            return params.entrySet().stream()
+                    .map(param -> param.getKey() + "=" + param.getValue())
+                    .collect(Collectors.joining(";"));
+        }
+
+        private String toJson() {
+            String paramsJson = params.entrySet().stream()
+                    .map(param -> quote(param.getKey()) + ": " + quote(param.getValue()))
+                    .collect(Collectors.joining(", ", "{", "}"));
+            return String.format(Locale.ROOT,
+                    "{\"benchmark\": %s, \"params\": %s, \"unit\": %s, \"score\": %.3f, \"error\": %.3f, "
+                            + "\"min\": %.3f, \"max\": %.3f, \"samples\": %d}",
+                    quote(benchmark), paramsJson, quote(unit), score, error, min, max, samples);
+        }
+
+        private String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%s,%.3f,%.3f,%.3f,%.3f,%d",
+                    csv(benchmark), csv(joinedParams()), csv(unit), score, error, min, max, samples);
+        }
+
+        private static String quote(String value) {
+            StringBuilder result = new StringBuilder("\"");
+            for (char c : value.toCharArray()) {
+                switch (c) {
+                    case '"' -> result.append("\\\"");
+                    case '\\' -> result.append("\\\\");
+                    case '\n' -> result.append("\\n");
+                    default -> {
+                        if (c < 0x20) {
+                            result.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            result.append(c);
+                        }
+                    }
+                }
+            }
+            return result.append('"').toString();
+        }
+
+        private static String csv(String value) {
+            if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-24s %-40s %14.1f +- %10.1f %s",
+                    benchmark, joinedParams(), score, error, unit);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package info.kgeorgiy.ja.kadyrov.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Directory trees of random files for benchmarks.
+ * Files are generated deterministically and are reused by later runs, if they already have the expected size.
+ *
+ * @author Kadyrov Rustam.
+ */
+public enum SyntheticTree {
+    /**
+     * Many tiny files: 20000 files of 1 KiB.
+     */
+    TINY(new long[][]{{20_000, 1L << 10}}),
+    /**
+     * Few huge files: 2 files of 1 GiB.
+     */
+    HUGE(new long[][]{{2, 1L << 30}}),
+    /**
+     * Mixed tree: 4000 files of 4 KiB, 200 files of 1 MiB and 2 files of 128 MiB.
+     */
+    MIXED(new long[][]{{4_000, 4L << 10}, {200, 1L << 20}, {2, 128L << 20}}),
+    /**
+     * One file of 4 GiB, larger than a single mapping and than an {@code int} offset.
+     */
+    GIANT(new long[][]{{1, 4L << 30}});
+
+    private static final int FILES_PER_DIR = 500;
+
+    private final long[][] groups;
+
+    SyntheticTree(long[][] groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Returns total size of files of the tree.
+     *
+     * @return size in bytes.
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (long[] group : groups) {
+            bytes += group[0] * group[1];
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns number of files of the tree.
+     *
+     * @return number of files.
+     */
+    public long files() {
+        long files = 0;
+        for (long[] group : groups) {
+            files += group[0];
+        }
+        return files;
+    }
+
+    /**
+     * Generates missing files of the tree in {@code root/name}.
+     *
+     * @param root root directory of trees.
+     * @return generated files.
+     * @throws IOException if an I/O error occurs.
+     */
+    public List<Path> generate(Path root) throws IOException {
+        Path base = root.resolve(name().toLowerCase(Locale.ROOT));
+        List<Path> files = new ArrayList<>();
+        byte[] block = new byte[1 << 20];
+        Random random = new Random(ordinal());
+        random.nextBytes(block);
+        int index = 0;
+        for (long[] group : groups) {
+            for (long i = 0; i < group[0]; i++, index++) {
+                Path dir = Files.createDirectories(base.resolve("dir_" + index / FILES_PER_DIR));
+                Path file = dir.resolve("file_" + index);
+                if (!Files.exists(file) || Files.size(file) != group[1]) {
+                    write(file, group[1], block, index);
+                }
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static void write(Path file, long size, byte[] block, int seed) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            // Every file starts differently, so equal files are not deduplicated by any layer below
+            byte[] prefix = Integer.toString(seed).getBytes(StandardCharsets.US_ASCII);
+            long written = Math.min(size, prefix.length);
+            out.write(prefix, 0, (int) written);
+            while (written < size) {
+                int length = (int) Math.min(block.length, size - written);
+                out.write(block, 0, length);
+                written += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package info.kgeorgiy.ja.kadyrov.student;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the least {@code capacity} offered elements in a binary max-heap.
+ * Equal elements are ordered by arrival, as a stable sort would order them,
+ * so {@link #sorted(int)} returns a prefix of the stably sorted input.
+ * Offering {@code n} elements takes {@code O(n log capacity)} time and {@code O(capacity)} memory.
+ *
+ * @param <E> type of elements.
+ * @author Kadyrov Rustam.
+ */
+class BoundedHeap<E> {
+    private final Comparator<? super E> comparator;
+    private final Object[] elements;
+    private final long[] arrivals;
+    private int size;
+    private long offered;
+
+    /**
+     * Creates empty heap.
+     *
+     * @param comparator order of elements.
+     * @param capacity   maximal number of kept elements.
+     */
+    BoundedHeap(Comparator<? super E> comparator, int capacity) {
+        this.comparator = comparator;
+        this.elements = new Object[capacity];
+        this.arrivals = new long[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int index) {
+        return (E) elements[index];
+    }
+
+    private int compare(int first, int second) {
+        int compared = comparator.compare(element(first), element(second));
+        return compared != 0 ? compared : Long.compare(arrivals[first], arrivals[second]);
+    }
+
+    private void swap(int first, int second) {
+        Object element = elements[first];
+        elements[first] = elements[second];
+        elements[second] = element;
+        long arrival = arrivals[first];
+        arrivals[first] = arrivals[second];
+        arrivals[second] = arrival;
+    }
+
+    void offer(E element) {
+        long arrival = offered++;
+        if (size < elements.length) {
+            elements[size] = element;
+            arrivals[size] = arrival;
+            siftUp(size++);
+        } else if (size > 0 && comparator.compare(element, element(0)) < 0) {
+            // Later elements lose ties, so only strictly less elements replace the greatest one
+            elements[0] = element;
+            arrivals[0] = arrival;
+            siftDown(0, size);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0 && compare((index - 1) / 2, index) < 0) {
+            swap((index - 1) / 2, index);
+            index = (index - 1) / 2;
+        }
+    }
+
+    private void siftDown(int index, int size) {
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && compare(child + 1, child) > 0) {
+                child++;
+            }
+            if (compare(index, child) >= 0) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    /**
+     * Sorts kept elements in place and returns them, the heap should not be used afterwards.
+     *
+     * @param from number of least elements to skip.
+     * @return kept elements from {@code from} in ascending order.
+     */
+    @SuppressWarnings("unchecked")
+    List<E> sorted(int from) {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return (List<E>) List.of(Arrays.copyOfRange(elements, Math.min(from, size), size));
+    }
+}
@@ -0,0 +1,259 @@
+package info.kgeorgiy.ja.kadyrov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * {@link StudentDB} over a columnar snapshot of students.
+ * Ids are kept in an {@code int[]} column, groups in a {@code byte[]} column of ordinals, first and last names
+ * in {@code int[]} columns of codes into a sorted pool of distinct names, so codes compare as names do.
+ * Projections, distinct counts and filters scan primitive arrays, and {@code Student} objects are created
+ * only for returned results. The source collection is referenced weakly, queries over it are answered
+ * from the columns while it is alive, queries over other collections fall back to {@link StudentDB}.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class ColumnarStudentDB extends StudentDB {
+    private static final GroupName[] GROUPS = GroupName.values();
+
+    private final WeakReference<Collection<Student>> source;
+    private final String[] pool;
+    private final int[] ids;
+    private final int[] firstNames;
+    private final int[] lastNames;
+    private final byte[] groups;
+    private final int[] byName;
+
+    /**
+     * Encodes students. The collection should not be modified afterwards.
+     *
+     * @param students snapshot of students.
+     */
+    public ColumnarStudentDB(Collection<Student> students) {
+        this.source = new WeakReference<>(students);
+        this.pool = students.stream()
+                .mapMulti((Student student, Consumer<String> names) -> {
+                    names.accept(student.getFirstName());
+                    names.accept(student.getLastName());
+                })
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+        int size = students.size();
+        this.ids = new int[size];
+        this.firstNames = new int[size];
+        this.lastNames = new int[size];
+        this.groups = new byte[size];
+        int row = 0;
+        for (Student student : students) {
+            ids[row] = student.getId();
+            firstNames[row] = code(student.getFirstName());
+            lastNames[row] = code(student.getLastName());
+            groups[row] = (byte) student.getGroup().ordinal();
+            row++;
+        }
+        // Same order as STUDENT_COMPARATOR: names descending, then ids ascending
+        this.byName = sort(Comparator
+                .<Integer>comparingInt(i -> -lastNames[i])
+                .thenComparingInt(i -> -firstNames[i])
+                .thenComparingInt(i -> ids[i]));
+    }
+
+    private int code(String name) {
+        return Arrays.binarySearch(pool, name);
+    }
+
+    private int[] sort(Comparator<Integer> comparator) {
+        Integer[] rows = new Integer[ids.length];
+        Arrays.setAll(rows, i -> i);
+        // Stable sort, so equal rows stay in the source order
+        Arrays.sort(rows, comparator);
+        return Arrays.stream(rows).mapToInt(Integer::intValue).toArray();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    private Student student(int row) {
+        return new Student(ids[row], pool[firstNames[row]], pool[lastNames[row]], GROUPS[groups[row]]);
+    }
+
+    private <T> List<T> column(IntFunction<T> value) {
+        List<T> result = new ArrayList<>(ids.length);
+        for (int row = 0; row < ids.length; row++) {
+            result.add(value.apply(row));
+        }
+        return result;
+    }
+
+    private List<Student> rows(int[] order, IntPredicate filter) {
+        List<Student> result = new ArrayList<>();
+        for (int row : order) {
+            if (filter.test(row)) {
+                result.add(student(row));
+            }
+        }
+        return result;
+    }
+
+    private boolean isSource(Collection<Student> students) {
+        return students == source.get();
+    }
+
+    public List<String> getFirstNames() {
+        return column(row -> pool[firstNames[row]]);
+    }
+
+    public List<String> getLastNames() {
+        return column(row -> pool[lastNames[row]]);
+    }
+
+    public List<GroupName> getGroups() {
+        return column(row -> GROUPS[groups[row]]);
+    }
+
+    public List<String> getFullNames() {
+        return column(row -> pool[firstNames[row]] + " " + pool[lastNames[row]]);
+    }
+
+    private BitSet distinctFirstNames() {
+        BitSet codes = new BitSet(pool.length);
+        for (int code : firstNames) {
+            codes.set(code);
+        }
+        return codes;
+    }
+
+    public int countDistinctFirstNames() {
+        return distinctFirstNames().cardinality();
+    }
+
+    public Set<String> getDistinctFirstNames() {
+        // Codes are ordered as names, so names are added in order
+        Set<String> names = new TreeSet<>();
+        distinctFirstNames().stream().forEach(code -> names.add(pool[code]));
+        return names;
+    }
+
+    public String getMaxStudentFirstName() {
+        int max = -1;
+        for (int row = 0; row < ids.length; row++) {
+            if (max < 0 || ids[row] > ids[max]) {
+                max = row;
+            }
+        }
+        return max < 0 ? "" : pool[firstNames[max]];
+    }
+
+    public List<Student> sortStudentsById() {
+        long[] keys = new long[ids.length];
+        for (int row = 0; row < ids.length; row++) {
+            // Rows break ties, so equal ids stay in the source order
+            keys[row] = (long) ids[row] << Integer.SIZE | row;
+        }
+        Arrays.sort(keys);
+        List<Student> result = new ArrayList<>(ids.length);
+        for (long key : keys) {
+            result.add(student((int) key));
+        }
+        return result;
+    }
+
+    public List<Student> sortStudentsByName() {
+        return rows(byName, row -> true);
+    }
+
+    public List<Student> findStudentsByFirstName(String name) {
+        int code = code(name);
+        return code < 0 ? new ArrayList<>() : rows(byName, row -> firstNames[row] == code);
+    }
+
+    public List<Student> findStudentsByLastName(String name) {
+        int code = code(name);
+        return code < 0 ? new ArrayList<>() : rows(byName, row -> lastNames[row] == code);
+    }
+
+    public List<Student> findStudentsByGroup(GroupName group) {
+        byte ordinal = (byte) group.ordinal();
+        return rows(byName, row -> groups[row] == ordinal);
+    }
+
+    public Map<String, String> findStudentNamesByGroup(GroupName group) {
+        Map<String, String> names = new HashMap<>();
+        byte ordinal = (byte) group.ordinal();
+        // Names descend in this order, so the last first name for a last name is the least
+        for (int row : byName) {
+            if (groups[row] == ordinal) {
+                names.put(pool[lastNames[row]], pool[firstNames[row]]);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> students) {
+        return isSource(students) ? getFirstNames() : super.getFirstNames(students);
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> students) {
+        return isSource(students) ? getLastNames() : super.getLastNames(students);
+    }
+
+    @Override
+    public List<GroupName> getGroups(List<Student> students) {
+        return isSource(students) ? getGroups() : super.getGroups(students);
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> students) {
+        return isSource(students) ? getFullNames() : super.getFullNames(students);
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> students) {
+        return isSource(students) ? getDistinctFirstNames() : super.getDistinctFirstNames(students);
+    }
+
+    @Override
+    public String getMaxStudentFirstName(List<Student> students) {
+        return isSource(students) ? getMaxStudentFirstName() : super.getMaxStudentFirstName(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        return isSource(students) ? sortStudentsById() : super.sortStudentsById(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return isSource(students) ? sortStudentsByName() : super.sortStudentsByName(students);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return isSource(students) ? findStudentsByFirstName(name) : super.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return isSource(students) ? findStudentsByLastName(name) : super.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, GroupName group) {
+        return isSource(students) ? findStudentsByGroup(group) : super.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, GroupName group) {
+        return isSource(students) ? findStudentNamesByGroup(group) : super.findStudentNamesByGroup(students, group);
+    }
+}
@@ -0,0 +1,258 @@
+package info.kgeorgiy.ja.kadyrov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Mutable {@link StudentDB}, which keeps students sorted by id and by name and indexed by first name,
+ * last name and group under {@link #add}, {@link #remove} and {@link #update}.
+ * Every change publishes a new immutable {@link Snapshot}, which shares all but the changed chunks
+ * of its {@link PersistentSortedList}s with the previous one. Writers publish snapshots by compare-and-set,
+ * readers never block and see all indexes of one version.
+ * Every student is numbered when it is added, and students equal by an order are ordered by their numbers,
+ * so a snapshot orders students as {@link StudentDB} orders the list of students in the order they were added.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class IncrementalStudentDB extends StudentDB {
+    private final AtomicReference<Snapshot> current;
+
+    /**
+     * Creates empty database.
+     */
+    public IncrementalStudentDB() {
+        this(List.of());
+    }
+
+    /**
+     * Creates database with the given students.
+     *
+     * @param students initial students.
+     */
+    public IncrementalStudentDB(Collection<Student> students) {
+        this.current = new AtomicReference<>(new Snapshot(students));
+    }
+
+    /**
+     * Returns current version of the database, which is not affected by later changes.
+     *
+     * @return current snapshot.
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public void add(Student student) {
+        update(List.of(), List.of(student));
+    }
+
+    /**
+     * Removes the earliest added student equal to the given one.
+     *
+     * @param student removed student.
+     * @return whether the student was found.
+     */
+    public boolean remove(Student student) {
+        return update(List.of(student), List.of());
+    }
+
+    /**
+     * Replaces the earliest added student equal to the given one atomically, replacement is added last.
+     *
+     * @param student     replaced student.
+     * @param replacement new student.
+     * @return whether the replaced student was found, otherwise nothing is changed.
+     */
+    public boolean update(Student student, Student replacement) {
+        return update(List.of(student), List.of(replacement));
+    }
+
+    private boolean update(List<Student> removed, List<Student> inserted) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            Snapshot updated = snapshot.with(removed, inserted);
+            if (updated == snapshot) {
+                return false;
+            }
+            // Retries against the newer snapshot, if another writer was first
+            if (current.compareAndSet(snapshot, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Student numbered in the order of addition, which makes orders total, so that a removed student is found exactly.
+     */
+    private record Entry(Student student, long sequence) {
+    }
+
+    /**
+     * Immutable version of the database.
+     */
+    public static final class Snapshot {
+        private static final Comparator<Entry> ID_ORDER = Comparator.comparing(Entry::student, Student::compareTo)
+                .thenComparingLong(Entry::sequence);
+        private static final Comparator<Entry> NAME_ORDER = Comparator.comparing(Entry::student, STUDENT_COMPARATOR)
+                .thenComparingLong(Entry::sequence);
+
+        private final long version;
+        private final long sequence;
+        private final PersistentSortedList<Entry> byId;
+        private final PersistentSortedList<Entry> byName;
+        private final PersistentSortedList<Entry> byFirstName;
+        private final PersistentSortedList<Entry> byLastName;
+        private final PersistentSortedList<Entry> byGroup;
+
+        private Snapshot(
+                long version,
+                long sequence,
+                PersistentSortedList<Entry> byId,
+                PersistentSortedList<Entry> byName,
+                PersistentSortedList<Entry> byFirstName,
+                PersistentSortedList<Entry> byLastName,
+                PersistentSortedList<Entry> byGroup
+        ) {
+            this.version = version;
+            this.sequence = sequence;
+            this.byId = byId;
+            this.byName = byName;
+            this.byFirstName = byFirstName;
+            this.byLastName = byLastName;
+            this.byGroup = byGroup;
+        }
+
+        private Snapshot(Collection<Student> students) {
+            this(entries(students));
+        }
+
+        private Snapshot(List<Entry> entries) {
+            this(
+                    0,
+                    entries.size(),
+                    PersistentSortedList.of(ID_ORDER, entries),
+                    PersistentSortedList.of(NAME_ORDER, entries),
+                    PersistentSortedList.of(byKey(Student::getFirstName), entries),
+                    PersistentSortedList.of(byKey(Student::getLastName), entries),
+                    PersistentSortedList.of(byKey(Student::getGroup), entries)
+            );
+        }
+
+        private static List<Entry> entries(Collection<Student> students) {
+            List<Entry> entries = new ArrayList<>(students.size());
+            for (Student student : students) {
+                entries.add(new Entry(student, entries.size()));
+            }
+            return entries;
+        }
+
+        private static <K extends Comparable<? super K>> Comparator<Entry> byKey(Function<Student, K> key) {
+            // Students with the same key are sorted by name, so postings are contiguous and sorted
+            return Comparator.comparing((Entry entry) -> key.apply(entry.student())).thenComparing(NAME_ORDER);
+        }
+
+        /**
+         * Returns entry of a student equal to the given one, {@code null} if there is none.
+         */
+        private static Entry find(PersistentSortedList<Entry> byName, Student student) {
+            int index = byName.rank(entry -> STUDENT_COMPARATOR.compare(entry.student(), student) < 0);
+            for (; index < byName.size(); index++) {
+                Entry entry = byName.get(index);
+                if (STUDENT_COMPARATOR.compare(entry.student(), student) != 0) {
+                    break;
+                }
+                if (entry.student().equals(student)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns snapshot with students removed and inserted, or this snapshot, if some removed student is absent.
+         */
+        private Snapshot with(List<Student> removed, List<Student> inserted) {
+            PersistentSortedList<Entry> byId = this.byId;
+            PersistentSortedList<Entry> byName = this.byName;
+            PersistentSortedList<Entry> byFirstName = this.byFirstName;
+            PersistentSortedList<Entry> byLastName = this.byLastName;
+            PersistentSortedList<Entry> byGroup = this.byGroup;
+            for (Student student : removed) {
+                Entry entry = find(byName, student);
+                if (entry == null) {
+                    return this;
+                }
+                byName = byName.remove(entry);
+                byId = byId.remove(entry);
+                byFirstName = byFirstName.remove(entry);
+                byLastName = byLastName.remove(entry);
+                byGroup = byGroup.remove(entry);
+            }
+            long sequence = this.sequence;
+            for (Student student : inserted) {
+                Entry entry = new Entry(student, sequence++);
+                byName = byName.insert(entry);
+                byId = byId.insert(entry);
+                byFirstName = byFirstName.insert(entry);
+                byLastName = byLastName.insert(entry);
+                byGroup = byGroup.insert(entry);
+            }
+            return new Snapshot(version + 1, sequence, byId, byName, byFirstName, byLastName, byGroup);
+        }
+
+        /**
+         * Returns number of changes applied before this snapshot.
+         */
+        public long version() {
+            return version;
+        }
+
+        public int size() {
+            return byName.size();
+        }
+
+        public List<Student> sortStudentsById() {
+            return byId.toList(Entry::student);
+        }
+
+        public List<Student> sortStudentsByName() {
+            return byName.toList(Entry::student);
+        }
+
+        private static <K extends Comparable<? super K>> List<Student> posting(
+                PersistentSortedList<Entry> index,
+                Function<Student, K> key,
+                K value
+        ) {
+            return index.subList(
+                    index.rank(entry -> key.apply(entry.student()).compareTo(value) < 0),
+                    index.rank(entry -> key.apply(entry.student()).compareTo(value) <= 0),
+                    Entry::student);
+        }
+
+        public List<Student> findStudentsByFirstName(String name) {
+            return posting(byFirstName, Student::getFirstName, name);
+        }
+
+        public List<Student> findStudentsByLastName(String name) {
+            return posting(byLastName, Student::getLastName, name);
+        }
+
+        public List<Student> findStudentsByGroup(GroupName group) {
+            return posting(byGroup, Student::getGroup, group);
+        }
+
+        public Map<String, String> findStudentNamesByGroup(GroupName group) {
+            Map<String, String> names = new HashMap<>();
+            // Names descend in a posting, so the last first name for a last name is the least
+            for (Student student : findStudentsByGroup(group)) {
+                names.put(student.getLastName(), student.getFirstName());
+            }
+            return names;
+        }
+    }
+}
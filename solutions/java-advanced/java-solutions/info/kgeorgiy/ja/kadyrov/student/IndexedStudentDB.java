@@ -0,0 +1,160 @@
+package info.kgeorgiy.ja.kadyrov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link StudentDB} over a snapshot of students, which is indexed once on construction.
+ * Students are sorted by id and by {@link StudentDB#STUDENT_COMPARATOR}, and hash indexes by first name,
+ * last name and group keep postings already sorted by name, so lookups take time proportional to the result.
+ * Queries over the snapshot collection itself are answered from the indexes,
+ * queries over other collections fall back to {@link StudentDB}.
+ * As in {@link StudentDB}, {@code findStudentsBy*} queries over a collection return fresh mutable lists,
+ * while accessors without a collection return shared unmodifiable postings without copying.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class IndexedStudentDB extends StudentDB {
+    private final Collection<Student> students;
+    private final List<Student> byId;
+    private final List<Student> byName;
+    private final Map<String, List<Student>> byFirstName;
+    private final Map<String, List<Student>> byLastName;
+    private final Map<GroupName, List<Student>> byGroup;
+
+    /**
+     * Indexes students. The collection should not be modified afterwards.
+     *
+     * @param students snapshot of students.
+     */
+    public IndexedStudentDB(Collection<Student> students) {
+        this.students = students;
+        this.byId = students.stream().sorted().toList();
+        this.byName = students.stream().sorted(STUDENT_COMPARATOR).toList();
+        this.byFirstName = index(byName, Student::getFirstName);
+        this.byLastName = index(byName, Student::getLastName);
+        this.byGroup = index(byName, Student::getGroup);
+    }
+
+    private static <K> Map<K, List<Student>> index(List<Student> sorted, Function<Student, K> key) {
+        // Grouping keeps encounter order, so every posting is sorted by name
+        return sorted.stream().collect(Collectors.groupingBy(
+                key,
+                HashMap::new,
+                Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)));
+    }
+
+    private static <K> List<Student> posting(Map<K, List<Student>> index, K key) {
+        return index.getOrDefault(key, List.of());
+    }
+
+    public List<Student> sortStudentsById() {
+        return byId;
+    }
+
+    public List<Student> sortStudentsByName() {
+        return byName;
+    }
+
+    public List<Student> findStudentsByFirstName(String name) {
+        return posting(byFirstName, name);
+    }
+
+    public List<Student> findStudentsByLastName(String name) {
+        return posting(byLastName, name);
+    }
+
+    public List<Student> findStudentsByGroup(GroupName group) {
+        return posting(byGroup, group);
+    }
+
+    public Map<String, String> findStudentNamesByGroup(GroupName group) {
+        return posting(byGroup, group).stream().collect(Collectors.toMap(
+                Student::getLastName,
+                Student::getFirstName,
+                BinaryOperator.minBy(Comparator.naturalOrder())));
+    }
+
+    private static List<Student> page(List<Student> sorted, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit: " + offset + ", " + limit);
+        }
+        return sorted.subList(Math.min(offset, sorted.size()), (int) Math.min(sorted.size(), (long) offset + limit));
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students, int offset, int limit) {
+        return students == this.students ? page(byId, offset, limit) : super.sortStudentsById(students, offset, limit);
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students, int offset, int limit) {
+        return students == this.students
+                ? page(byName, offset, limit)
+                : super.sortStudentsByName(students, offset, limit);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name, int limit) {
+        return students == this.students
+                ? page(findStudentsByFirstName(name), 0, limit)
+                : super.findStudentsByFirstName(students, name, limit);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name, int limit) {
+        return students == this.students
+                ? page(findStudentsByLastName(name), 0, limit)
+                : super.findStudentsByLastName(students, name, limit);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, GroupName group, int limit) {
+        return students == this.students
+                ? page(findStudentsByGroup(group), 0, limit)
+                : super.findStudentsByGroup(students, group, limit);
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        return students == this.students ? sortStudentsById() : super.sortStudentsById(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return students == this.students ? sortStudentsByName() : super.sortStudentsByName(students);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return students == this.students
+                ? new ArrayList<>(findStudentsByFirstName(name))
+                : super.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return students == this.students
+                ? new ArrayList<>(findStudentsByLastName(name))
+                : super.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, GroupName group) {
+        return students == this.students
+                ? new ArrayList<>(findStudentsByGroup(group))
+                : super.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, GroupName group) {
+        return students == this.students
+                ? findStudentNamesByGroup(group)
+                : super.findStudentNamesByGroup(students, group);
+    }
+}
@@ -0,0 +1,206 @@
+package info.kgeorgiy.ja.kadyrov.student;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Immutable sorted list with duplicates, stored as sorted chunks of at most {@value #CHUNK_SIZE} elements.
+ * Insertion and removal return a new list, which copies only the changed chunk and the array of chunks,
+ * so an update takes {@code O(CHUNK_SIZE + n / CHUNK_SIZE)} time and older lists stay valid.
+ *
+ * @param <E> type of elements.
+ * @author Kadyrov Rustam.
+ */
+final class PersistentSortedList<E> {
+    private static final int CHUNK_SIZE = 1024;
+
+    private final Comparator<? super E> comparator;
+    private final Object[][] chunks;
+    // Number of elements in chunks up to the given one inclusive
+    private final int[] ends;
+
+    private PersistentSortedList(Comparator<? super E> comparator, Object[][] chunks) {
+        this.comparator = comparator;
+        this.chunks = chunks;
+        this.ends = new int[chunks.length];
+        int end = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            end += chunks[i].length;
+            ends[i] = end;
+        }
+    }
+
+    /**
+     * Creates list of the given elements.
+     *
+     * @param comparator total order of elements.
+     * @param elements   elements in any order.
+     * @return new list.
+     */
+    static <E> PersistentSortedList<E> of(Comparator<? super E> comparator, Collection<? extends E> elements) {
+        Object[] sorted = elements.toArray();
+        @SuppressWarnings("unchecked")
+        Comparator<Object> order = (Comparator<Object>) comparator;
+        Arrays.sort(sorted, order);
+        Object[][] chunks = new Object[(sorted.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(sorted, i * CHUNK_SIZE, Math.min(sorted.length, (i + 1) * CHUNK_SIZE));
+        }
+        return new PersistentSortedList<>(comparator, chunks);
+    }
+
+    int size() {
+        return chunks.length == 0 ? 0 : ends[chunks.length - 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(Object[] chunk, int index) {
+        return (E) chunk[index];
+    }
+
+    /**
+     * Returns number of the leading elements satisfying predicate,
+     * which should hold for a prefix of the list.
+     */
+    int rank(Predicate<? super E> before) {
+        int low = 0;
+        int high = chunks.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Object[] chunk = chunks[middle];
+            if (before.test(element(chunk, chunk.length - 1))) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == chunks.length) {
+            return size();
+        }
+        Object[] chunk = chunks[low];
+        int from = 0;
+        int to = chunk.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (before.test(element(chunk, middle))) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return (low == 0 ? 0 : ends[low - 1]) + from;
+    }
+
+    E get(int index) {
+        int chunk = chunkOf(index);
+        return element(chunks[chunk], index - (chunk == 0 ? 0 : ends[chunk - 1]));
+    }
+
+    /**
+     * Returns copy of elements in the range of indices, converted by the mapper.
+     */
+    <R> List<R> subList(int from, int to, Function<? super E, ? extends R> mapper) {
+        List<R> result = new ArrayList<>(Math.max(0, to - from));
+        int chunk = chunkOf(from);
+        for (int index = from; index < to; chunk++) {
+            int start = chunk == 0 ? 0 : ends[chunk - 1];
+            for (int offset = index - start; offset < chunks[chunk].length && index < to; offset++, index++) {
+                result.add(mapper.apply(element(chunks[chunk], offset)));
+            }
+        }
+        return result;
+    }
+
+    <R> List<R> toList(Function<? super E, ? extends R> mapper) {
+        return subList(0, size(), mapper);
+    }
+
+    /**
+     * Returns index of the chunk containing element with the given index.
+     */
+    private int chunkOf(int index) {
+        int chunk = Arrays.binarySearch(ends, index);
+        return chunk >= 0 ? chunk + 1 : -chunk - 1;
+    }
+
+    /**
+     * Returns index of the chunk, where the element should be inserted.
+     */
+    private int chunkFor(E element) {
+        int chunk = Math.min(chunkOf(rank(e -> comparator.compare(e, element) < 0)), chunks.length - 1);
+        return Math.max(chunk, 0);
+    }
+
+    PersistentSortedList<E> insert(E element) {
+        if (chunks.length == 0) {
+            return new PersistentSortedList<>(comparator, new Object[][]{{element}});
+        }
+        int chunk = chunkFor(element);
+        Object[] old = chunks[chunk];
+        int index = position(old, element);
+        Object[] updated = new Object[old.length + 1];
+        System.arraycopy(old, 0, updated, 0, index);
+        updated[index] = element;
+        System.arraycopy(old, index, updated, index + 1, old.length - index);
+        if (updated.length <= CHUNK_SIZE) {
+            return with(chunk, updated);
+        }
+        Object[][] split = new Object[chunks.length + 1][];
+        System.arraycopy(chunks, 0, split, 0, chunk);
+        split[chunk] = Arrays.copyOfRange(updated, 0, updated.length / 2);
+        split[chunk + 1] = Arrays.copyOfRange(updated, updated.length / 2, updated.length);
+        System.arraycopy(chunks, chunk + 1, split, chunk + 2, chunks.length - chunk - 1);
+        return new PersistentSortedList<>(comparator, split);
+    }
+
+    /**
+     * Removes one element equal to the given one by the comparator.
+     *
+     * @return new list or this list, if there is no such element.
+     */
+    PersistentSortedList<E> remove(E element) {
+        if (chunks.length == 0) {
+            return this;
+        }
+        int chunk = chunkFor(element);
+        Object[] old = chunks[chunk];
+        int index = position(old, element);
+        if (index == old.length || comparator.compare(element(old, index), element) != 0) {
+            return this;
+        }
+        if (old.length > 1) {
+            Object[] updated = new Object[old.length - 1];
+            System.arraycopy(old, 0, updated, 0, index);
+            System.arraycopy(old, index + 1, updated, index, old.length - index - 1);
+            return with(chunk, updated);
+        }
+        Object[][] merged = new Object[chunks.length - 1][];
+        System.arraycopy(chunks, 0, merged, 0, chunk);
+        System.arraycopy(chunks, chunk + 1, merged, chunk, chunks.length - chunk - 1);
+        return new PersistentSortedList<>(comparator, merged);
+    }
+
+    /**
+     * Returns index of the first element of the chunk not less than the given one.
+     */
+    private int position(Object[] chunk, E element) {
+        int from = 0;
+        int to = chunk.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (comparator.compare(element(chunk, middle), element) < 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    private PersistentSortedList<E> with(int chunk, Object[] updated) {
+        Object[][] copy = chunks.clone();
+        copy[chunk] = updated;
+        return new PersistentSortedList<>(comparator, copy);
+    }
+}
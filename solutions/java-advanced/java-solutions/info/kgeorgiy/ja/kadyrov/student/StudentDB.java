@@ -9,11 +9,43 @@ import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class StudentDB implements StudentQuery {
     public static final Comparator<Student> STUDENT_COMPARATOR = Comparator.comparing(Student::getLastName).
             thenComparing(Student::getFirstName).reversed().
             thenComparing(Student::getId);
+    /**
+     * Inputs smaller than this are processed sequentially even in parallel mode.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final boolean parallel;
+
+    /**
+     * Creates database, which processes inputs sequentially.
+     */
+    public StudentDB() {
+        this(false);
+    }
+
+    /**
+     * Creates database.
+     *
+     * @param parallel whether inputs of at least {@value #PARALLEL_THRESHOLD} students are processed
+     *                 on the common fork-join pool. Results are the same as in the sequential mode.
+     */
+    public StudentDB(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    private boolean isParallel(Collection<?> students) {
+        return parallel && students.size() >= PARALLEL_THRESHOLD;
+    }
+
+    private <T> Stream<T> stream(Collection<T> students) {
+        return isParallel(students) ? students.parallelStream() : students.stream();
+    }
 
     private <T> List<T> getStudentField(
             List<Student> students,
@@ -25,7 +57,7 @@ public class StudentDB implements StudentQuery {
             List<Student> students,
             Function<Student, T> getField,
             Collector<T, ?, C> collector) {
-        return students.stream()
+        return stream(students)
                 .map(getField)
                 .collect(collector);
     }
@@ -58,13 +90,19 @@ public class StudentDB implements StudentQuery {
 
     @Override
     public String getMaxStudentFirstName(List<Student> students) {
-        return students.stream()
+        return stream(students)
                 .max(Student::compareTo)
                 .map(Student::getFirstName)
                 .orElse("");
     }
 
     private List<Student> sortStudentBy(Collection<Student> students, Comparator<Student> comparator) {
+        if (isParallel(students)) {
+            // Parallel sort is stable, so ties are ordered as in the sequential mode
+            Student[] sorted = students.toArray(Student[]::new);
+            Arrays.parallelSort(sorted, comparator);
+            return List.of(sorted);
+        }
         return students.stream()
                 .sorted(comparator)
                 .toList();
@@ -80,16 +118,93 @@ public class StudentDB implements StudentQuery {
         return sortStudentBy(students, STUDENT_COMPARATOR);
     }
 
+    private static List<Student> page(
+            Stream<Student> students,
+            Comparator<Student> comparator,
+            int size,
+            int offset,
+            int limit
+    ) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit: " + offset + ", " + limit);
+        }
+        BoundedHeap<Student> heap = new BoundedHeap<>(comparator, (int) Math.min(size, (long) offset + limit));
+        students.forEachOrdered(heap::offer);
+        return heap.sorted(offset);
+    }
+
+    /**
+     * Returns page of students sorted by id without sorting all of them.
+     * Takes {@code O(n log (offset + limit))} time.
+     *
+     * @param students students.
+     * @param offset   number of first students to skip.
+     * @param limit    maximal number of returned students.
+     * @return students from {@code offset} in the order of {@link #sortStudentsById(Collection)}.
+     */
+    public List<Student> sortStudentsById(Collection<Student> students, int offset, int limit) {
+        return page(students.stream(), Student::compareTo, students.size(), offset, limit);
+    }
+
+    /**
+     * Returns page of students sorted by name without sorting all of them.
+     * Takes {@code O(n log (offset + limit))} time.
+     *
+     * @param students students.
+     * @param offset   number of first students to skip.
+     * @param limit    maximal number of returned students.
+     * @return students from {@code offset} in the order of {@link #sortStudentsByName(Collection)}.
+     */
+    public List<Student> sortStudentsByName(Collection<Student> students, int offset, int limit) {
+        return page(students.stream(), STUDENT_COMPARATOR, students.size(), offset, limit);
+    }
+
     private <T> List<Student> findStudentBy(
             Collection<Student> students,
             Function<Student, T> parameter,
             T value
     ) {
-        return sortStudentsByName(students).stream()
+        return stream(students)
                 .filter(student -> parameter.apply(student).equals(value))
+                .sorted(STUDENT_COMPARATOR)
                 .collect(Collectors.toList());
     }
 
+    private <T> List<Student> findStudentBy(
+            Collection<Student> students,
+            Function<Student, T> parameter,
+            T value,
+            int limit
+    ) {
+        return page(
+                students.stream().filter(student -> parameter.apply(student).equals(value)),
+                STUDENT_COMPARATOR,
+                students.size(),
+                0,
+                limit);
+    }
+
+    /**
+     * Returns at most {@code limit} first students of {@link #findStudentsByFirstName(Collection, String)}.
+     */
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name, int limit) {
+        return findStudentBy(students, Student::getFirstName, name, limit);
+    }
+
+    /**
+     * Returns at most {@code limit} first students of {@link #findStudentsByLastName(Collection, String)}.
+     */
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name, int limit) {
+        return findStudentBy(students, Student::getLastName, name, limit);
+    }
+
+    /**
+     * Returns at most {@code limit} first students of {@link #findStudentsByGroup(Collection, GroupName)}.
+     */
+    public List<Student> findStudentsByGroup(Collection<Student> students, GroupName group, int limit) {
+        return findStudentBy(students, Student::getGroup, group, limit);
+    }
+
     @Override
     public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
         return findStudentBy(students, Student::getFirstName, name);
@@ -107,11 +222,16 @@ public class StudentDB implements StudentQuery {
 
     @Override
     public Map<String, String> findStudentNamesByGroup(Collection<Student> students, GroupName group) {
-        return students.stream()
-                .filter(student -> student.getGroup().equals(group))
-                .collect(Collectors.toMap(
-                        Student::getLastName,
-                        Student::getFirstName,
-                        BinaryOperator.minBy(Comparator.naturalOrder())));
+        Stream<Student> members = stream(students).filter(student -> student.getGroup().equals(group));
+        if (members.isParallel()) {
+            return members.collect(Collectors.toConcurrentMap(
+                    Student::getLastName,
+                    Student::getFirstName,
+                    BinaryOperator.minBy(Comparator.naturalOrder())));
+        }
+        return members.collect(Collectors.toMap(
+                Student::getLastName,
+                Student::getFirstName,
+                BinaryOperator.minBy(Comparator.naturalOrder())));
     }
 }
@@ -0,0 +1,239 @@
+package info.kgeorgiy.ja.kadyrov.student.tests;
+
+import info.kgeorgiy.ja.kadyrov.student.ColumnarStudentDB;
+import info.kgeorgiy.ja.kadyrov.student.IncrementalStudentDB;
+import info.kgeorgiy.ja.kadyrov.student.IndexedStudentDB;
+import info.kgeorgiy.ja.kadyrov.student.StudentDB;
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class StudentDBTest {
+    private final static int SIZE = 5000;
+    private final static int NAMES = 40;
+    private final static Random RANDOM = new Random(3239);
+    private final static StudentDB EXPECTED = new StudentDB();
+
+    private static List<Student> students(int size) {
+        return IntStream.range(0, size)
+                .mapToObj(i -> new Student(
+                        RANDOM.nextInt(size * 2),
+                        "First" + RANDOM.nextInt(NAMES),
+                        "Last" + RANDOM.nextInt(NAMES),
+                        GroupName.values()[RANDOM.nextInt(GroupName.values().length)]))
+                .toList();
+    }
+
+    @Test
+    public void test1() {
+        System.err.println("test_1::indexed_student_db.");
+        for (int size : new int[]{0, 1, 10, SIZE}) {
+            List<Student> students = students(size);
+            IndexedStudentDB db = new IndexedStudentDB(students);
+            checkQueries(students, db);
+            // Results are copies, as in StudentDB, changing them does not change the indexes
+            GroupName group = GroupName.values()[0];
+            List<Student> expected = EXPECTED.findStudentsByGroup(students, group);
+            List<Student> found = db.findStudentsByGroup(students, group);
+            found.clear();
+            db.findStudentsByFirstName(students, "First0").add(null);
+            Assert.assertEquals(expected, db.findStudentsByGroup(students, group));
+            Assert.assertEquals(EXPECTED.findStudentsByFirstName(students, "First0"),
+                    db.findStudentsByFirstName(students, "First0"));
+            // Other collections are not indexed
+            checkQueries(new ArrayList<>(students.subList(0, size / 2)), db);
+        }
+        System.err.println("test_1::complete!");
+    }
+
+    @Test
+    public void test2() {
+        System.err.println("test_2::parallel_student_db.");
+        StudentDB db = new StudentDB(true);
+        for (int size : new int[]{0, 10, StudentDB.PARALLEL_THRESHOLD - 1, StudentDB.PARALLEL_THRESHOLD * 4}) {
+            checkQueries(students(size), db);
+        }
+        System.err.println("test_2::complete!");
+    }
+
+    @Test
+    public void test3() {
+        System.err.println("test_3::columnar_student_db.");
+        for (int size : new int[]{0, 1, 10, SIZE}) {
+            List<Student> students = students(size);
+            ColumnarStudentDB db = new ColumnarStudentDB(students);
+            Assert.assertEquals(size, db.size());
+            Assert.assertEquals(EXPECTED.getDistinctFirstNames(students).size(), db.countDistinctFirstNames());
+            checkQueries(students, db);
+            checkQueries(new ArrayList<>(students.subList(0, size / 2)), db);
+        }
+        System.err.println("test_3::complete!");
+    }
+
+    @Test
+    public void test4() {
+        System.err.println("test_4::pages.");
+        for (int size : new int[]{0, 1, 10, SIZE}) {
+            List<Student> students = students(size);
+            int[][] pages = {{0, 0}, {0, 1}, {0, 50}, {size / 2, 50}, {size, 1}, {1, Integer.MAX_VALUE}};
+            for (StudentDB db : List.of(EXPECTED, new IndexedStudentDB(students))) {
+                for (int[] page : pages) {
+                    int offset = page[0];
+                    int limit = page[1];
+                    Assert.assertEquals(page(EXPECTED.sortStudentsById(students), offset, limit),
+                            db.sortStudentsById(students, offset, limit));
+                    Assert.assertEquals(page(EXPECTED.sortStudentsByName(students), offset, limit),
+                            db.sortStudentsByName(students, offset, limit));
+                    Assert.assertEquals(page(EXPECTED.findStudentsByFirstName(students, "First1"), 0, limit),
+                            db.findStudentsByFirstName(students, "First1", limit));
+                    Assert.assertEquals(page(EXPECTED.findStudentsByLastName(students, "Last2"), 0, limit),
+                            db.findStudentsByLastName(students, "Last2", limit));
+                    Assert.assertEquals(page(EXPECTED.findStudentsByGroup(students, GroupName.M3239), 0, limit),
+                            db.findStudentsByGroup(students, GroupName.M3239, limit));
+                }
+            }
+        }
+        try {
+            EXPECTED.sortStudentsByName(List.of(), -1, 1);
+            Assert.fail("Negative offset accepted");
+        } catch (final IllegalArgumentException e) {
+            System.err.println("test_4::expected " + e.getMessage());
+        }
+        System.err.println("test_4::complete!");
+    }
+
+    @Test
+    public void test5() throws Exception {
+        System.err.println("test_5::incremental_student_db.");
+        // Students with equal names and ids differ in groups or are equal, ties are ordered by insertion
+        List<Student> initial = new ArrayList<>(students(SIZE));
+        for (int i = 0; i < SIZE / 10; i++) {
+            Student student = initial.get(i);
+            initial.add(student);
+            initial.add(new Student(student.getId(), student.getFirstName(), student.getLastName(),
+                    GroupName.values()[(student.getGroup().ordinal() + 1) % GroupName.values().length]));
+        }
+        Collections.shuffle(initial, RANDOM);
+        IncrementalStudentDB db = new IncrementalStudentDB(initial);
+        List<Student> expected = new ArrayList<>(initial);
+        IncrementalStudentDB.Snapshot first = db.snapshot();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 300; i++) {
+                int action = RANDOM.nextInt(4);
+                if (action == 0 || expected.isEmpty()) {
+                    Student student = students(1).get(0);
+                    db.add(student);
+                    expected.add(student);
+                } else if (action == 3) {
+                    Student student = expected.get(RANDOM.nextInt(expected.size()));
+                    db.add(student);
+                    expected.add(student);
+                } else {
+                    // The first of equal students is removed
+                    Student student = expected.get(RANDOM.nextInt(expected.size()));
+                    expected.remove(student);
+                    if (action == 1) {
+                        Assert.assertTrue(db.remove(student));
+                        Assert.assertEquals(expected.remove(student), db.remove(student));
+                    } else {
+                        Student replacement = withId(students(1).get(0), student.getId());
+                        Assert.assertTrue(db.update(student, replacement));
+                        expected.add(replacement);
+                    }
+                }
+            }
+            checkSnapshot(expected, db.snapshot());
+        }
+        checkSnapshot(initial, first);
+        Assert.assertEquals(0, first.version());
+
+        // Concurrent writers of disjoint students, readers see whole versions
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        IncrementalStudentDB shared = new IncrementalStudentDB();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int writer = 0; writer < 3; writer++) {
+            int base = writer * SIZE;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    shared.add(withId(students(1).get(0), base + i));
+                }
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                IncrementalStudentDB.Snapshot snapshot = shared.snapshot();
+                int grouped = Arrays.stream(GroupName.values())
+                        .mapToInt(group -> snapshot.findStudentsByGroup(group).size())
+                        .sum();
+                Assert.assertEquals(snapshot.version(), snapshot.size());
+                Assert.assertEquals(snapshot.size(), grouped);
+            }
+        });
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        reader.get();
+        executor.shutdown();
+        Assert.assertEquals(1500, shared.snapshot().size());
+        System.err.println("test_5::complete!");
+    }
+
+    private static Student withId(Student student, int id) {
+        return new Student(id, student.getFirstName(), student.getLastName(), student.getGroup());
+    }
+
+    private static void checkSnapshot(List<Student> students, IncrementalStudentDB.Snapshot snapshot) {
+        Assert.assertEquals(students.size(), snapshot.size());
+        Assert.assertEquals(EXPECTED.sortStudentsById(students), snapshot.sortStudentsById());
+        Assert.assertEquals(EXPECTED.sortStudentsByName(students), snapshot.sortStudentsByName());
+        for (int i = 0; i <= NAMES; i++) {
+            Assert.assertEquals(EXPECTED.findStudentsByFirstName(students, "First" + i),
+                    snapshot.findStudentsByFirstName("First" + i));
+            Assert.assertEquals(EXPECTED.findStudentsByLastName(students, "Last" + i),
+                    snapshot.findStudentsByLastName("Last" + i));
+        }
+        for (GroupName group : GroupName.values()) {
+            Assert.assertEquals(EXPECTED.findStudentsByGroup(students, group), snapshot.findStudentsByGroup(group));
+            Assert.assertEquals(EXPECTED.findStudentNamesByGroup(students, group),
+                    snapshot.findStudentNamesByGroup(group));
+        }
+    }
+
+    private static <T> List<T> page(List<T> list, int offset, int limit) {
+        return list.subList(Math.min(offset, list.size()), (int) Math.min(list.size(), (long) offset + limit));
+    }
+
+    private static void checkQueries(List<Student> students, StudentDB db) {
+        Assert.assertEquals(EXPECTED.getFirstNames(students), db.getFirstNames(students));
+        Assert.assertEquals(EXPECTED.getLastNames(students), db.getLastNames(students));
+        Assert.assertEquals(EXPECTED.getGroups(students), db.getGroups(students));
+        Assert.assertEquals(EXPECTED.getFullNames(students), db.getFullNames(students));
+        Assert.assertEquals(EXPECTED.getDistinctFirstNames(students), db.getDistinctFirstNames(students));
+        Assert.assertEquals(EXPECTED.getMaxStudentFirstName(students), db.getMaxStudentFirstName(students));
+        Assert.assertEquals(EXPECTED.sortStudentsById(students), db.sortStudentsById(students));
+        Assert.assertEquals(EXPECTED.sortStudentsByName(students), db.sortStudentsByName(students));
+        for (int i = 0; i <= NAMES; i++) {
+            String first = "First" + i;
+            String last = "Last" + i;
+            Assert.assertEquals(EXPECTED.findStudentsByFirstName(students, first),
+                    db.findStudentsByFirstName(students, first));
+            Assert.assertEquals(EXPECTED.findStudentsByLastName(students, last),
+                    db.findStudentsByLastName(students, last));
+        }
+        for (GroupName group : GroupName.values()) {
+            Assert.assertEquals(EXPECTED.findStudentsByGroup(students, group), db.findStudentsByGroup(students, group));
+            Assert.assertEquals(EXPECTED.findStudentNamesByGroup(students, group),
+                    db.findStudentNamesByGroup(students, group));
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Hashes files with its own {@link MessageDigest digests}, one for every algorithm.
+ * Every file is read once, each chunk is fed to all digests before the next one is read.
+ * Files smaller than {@link #MAP_THRESHOLD} are read through a direct buffer owned by the hasher,
+ * larger ones are digested straight from memory-mapped windows of {@link #MAP_WINDOW} bytes.
+ * If a {@link HashCache} is given, unchanged files are not read at all.
+ * If a {@link TreeHasher} is given, files are hashed in tree mode: chunks are hashed in parallel by the tree hasher
+ * and every column contains the digest of chunk digests of its algorithm instead of the digest of the file.
+ * Digests are written to a buffer owned by the hasher, so hashing does not allocate per file.
+ * If {@link WalkMetrics} are given, latency, bytes read and errors of every file are recorded.
+ * Instances are not thread-safe, every worker owns a separate one.
+ *
+ * @author Kadyrov Rustam.
+ */
+class FileHasher {
+    /**
+     * Digest algorithms used by default.
+     */
+    static final List<String> ALGORITHMS = List.of("SHA-256");
+    /**
+     * Size of the direct read buffer.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Files of this size and larger are memory-mapped.
+     */
+    static final long MAP_THRESHOLD = 1 << 24;
+    /**
+     * Size of one memory-mapped window.
+     */
+    static final long MAP_WINDOW = 1 << 26;
+
+    private final MessageDigest[] digests;
+    private final int[] lengths;
+    private final String algorithms;
+    private final byte[] result;
+    private final ByteBuffer buffer;
+    private final long mapThreshold;
+    private final HashCache cache;
+    private final TreeHasher tree;
+    private final WalkMetrics metrics;
+    private byte[] chunks;
+    private long read;
+
+    /**
+     * Creates hasher with default algorithms, buffer size and map threshold.
+     *
+     * @throws NoSuchAlgorithmException if default algorithm is not supported.
+     */
+    FileHasher() throws NoSuchAlgorithmException {
+        this(ALGORITHMS, null, null, null);
+    }
+
+    /**
+     * Creates hasher with default buffer size and map threshold.
+     *
+     * @param algorithms digest algorithms, one output column for each.
+     * @param cache      cache of digests or {@code null}.
+     * @param tree       hasher of chunks in tree mode or {@code null}.
+     * @param metrics    metrics of the walk or {@code null}.
+     * @throws NoSuchAlgorithmException if some algorithm is not supported.
+     */
+    FileHasher(List<String> algorithms, HashCache cache, TreeHasher tree, WalkMetrics metrics)
+            throws NoSuchAlgorithmException {
+        this(BUFFER_SIZE, MAP_THRESHOLD, algorithms, cache, tree, metrics);
+    }
+
+    /**
+     * Creates hasher with given read strategy parameters.
+     *
+     * @param bufferSize   size of the direct read buffer.
+     * @param mapThreshold files of this size and larger are memory-mapped.
+     * @param algorithms   digest algorithms, one output column for each.
+     * @param cache        cache of digests or {@code null}.
+     * @param tree         hasher of chunks in tree mode or {@code null}.
+     * @param metrics      metrics of the walk or {@code null}.
+     * @throws NoSuchAlgorithmException if some algorithm is not supported.
+     */
+    FileHasher(int bufferSize, long mapThreshold, List<String> algorithms, HashCache cache, TreeHasher tree,
+               WalkMetrics metrics) throws NoSuchAlgorithmException {
+        this.digests = new MessageDigest[algorithms.size()];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = getDigest(algorithms.get(i));
+        }
+        this.lengths = Arrays.stream(digests).mapToInt(MessageDigest::getDigestLength).toArray();
+        // Digests of different modes must never be mixed in the cache
+        this.algorithms = String.join(",", algorithms) + (tree == null ? "" : ";" + tree.spec());
+        this.result = new byte[Arrays.stream(lengths).sum()];
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.mapThreshold = mapThreshold;
+        this.cache = cache;
+        this.tree = tree;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates digest by name.
+     * Besides algorithms of installed providers, {@link Xxh64Digest#ALGORITHM} is supported.
+     *
+     * @param algorithm name of the algorithm.
+     * @return new digest.
+     * @throws NoSuchAlgorithmException if algorithm is not supported.
+     */
+    static MessageDigest getDigest(String algorithm) throws NoSuchAlgorithmException {
+        if (Xxh64Digest.ALGORITHM.equalsIgnoreCase(algorithm)) {
+            return new Xxh64Digest();
+        }
+        return MessageDigest.getInstance(algorithm);
+    }
+
+    /**
+     * Returns lengths of digests of given algorithms.
+     *
+     * @param algorithms digest algorithms.
+     * @return length of every digest in bytes.
+     * @throws NoSuchAlgorithmException if some algorithm is not supported.
+     */
+    static int[] digestLengths(List<String> algorithms) throws NoSuchAlgorithmException {
+        int[] lengths = new int[algorithms.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = getDigest(algorithms.get(i)).getDigestLength();
+        }
+        return lengths;
+    }
+
+    /**
+     * Returns lengths of digests of this hasher.
+     *
+     * @return length of every digest in bytes.
+     */
+    int[] digestLengths() {
+        return lengths.clone();
+    }
+
+    /**
+     * Returns concatenated digests of the file or zeros, if file cannot be read.
+     * Returned array is owned by the hasher and is overwritten by the next call.
+     *
+     * @param file path to file.
+     * @return concatenated digests.
+     */
+    byte[] hash(String file) {
+        long start = System.nanoTime();
+        read = 0;
+        try {
+            Path path = Path.of(file);
+            if (cache == null) {
+                digest(path);
+                logChunks(file, chunks, 0);
+                return result;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            byte[] cached = cache.get(path, attributes, algorithms);
+            if (cached != null) {
+                System.arraycopy(cached, 0, result, 0, result.length);
+                logChunks(file, cached, result.length);
+                return result;
+            }
+            digest(path);
+            logChunks(file, chunks, 0);
+            // File could be changed while it was read
+            if (unchanged(attributes, Files.readAttributes(path, BasicFileAttributes.class))) {
+                store(path, attributes);
+            }
+            return result;
+        } catch (IOException | InvalidPathException | SecurityException e) {
+            if (metrics != null) {
+                metrics.error(e);
+            }
+            return errorHash();
+        } finally {
+            if (metrics != null) {
+                metrics.file(System.nanoTime() - start, read);
+            }
+        }
+    }
+
+    /**
+     * Caches digests of the file. Digest is correct even if it cannot be cached,
+     * so failures are only reported and do not count as errors of the walk.
+     */
+    private void store(Path path, BasicFileAttributes attributes) {
+        byte[] entry = tree == null ? result : concat(result, chunks);
+        if (entry.length > HashCache.MAX_DIGEST_LENGTH) {
+            return;
+        }
+        try {
+            cache.put(path, attributes, algorithms, entry);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Cannot cache digest of " + path + " " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes concatenated digests of the file to {@link #result}
+     * and, in tree mode, concatenated chunk digests to {@link #chunks}.
+     */
+    private void digest(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (tree != null) {
+                chunks = tree.hashChunks(channel, size, result.length);
+                updateRoots(chunks);
+            } else if (size >= mapThreshold) {
+                readMapped(channel, size);
+            } else {
+                readBuffered(channel);
+            }
+            read = size;
+        }
+        try {
+            int offset = 0;
+            for (MessageDigest md : digests) {
+                offset += md.digest(result, offset, result.length - offset);
+            }
+        } catch (DigestException e) {
+            throw new IllegalStateException("Digest does not fit into result buffer", e);
+        }
+    }
+
+    private void updateRoots(byte[] chunks) {
+        int offset = 0;
+        for (int i = 0; i < digests.length; i++) {
+            for (int chunk = offset; chunk < chunks.length; chunk += result.length) {
+                digests[i].update(chunks, chunk, lengths[i]);
+            }
+            offset += lengths[i];
+        }
+    }
+
+    private void logChunks(String file, byte[] chunks, int offset) throws IOException {
+        if (tree != null) {
+            tree.log(file, chunks, offset, lengths);
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] concat = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, concat, first.length, second.length);
+        return concat;
+    }
+
+    private static boolean unchanged(BasicFileAttributes before, BasicFileAttributes after) {
+        // File key differs, if the file was replaced by another one of the same size and time
+        return before.size() == after.size()
+                && before.lastModifiedTime().equals(after.lastModifiedTime())
+                && Objects.equals(before.fileKey(), after.fileKey());
+    }
+
+    private void readBuffered(FileChannel channel) throws IOException {
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            update(buffer);
+            buffer.clear();
+        }
+    }
+
+    private void readMapped(FileChannel channel, long size) throws IOException {
+        for (long position = 0; position < size; position += MAP_WINDOW) {
+            update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+        }
+    }
+
+    private void update(ByteBuffer chunk) {
+        int position = chunk.position();
+        for (MessageDigest md : digests) {
+            chunk.position(position);
+            md.update(chunk);
+        }
+    }
+
+    /**
+     * Returns zero digests written for files which cannot be read
+     * and resets digests, which could be fed a part of the file.
+     * Returned array is owned by the hasher and is overwritten by the next call.
+     *
+     * @return zero digests.
+     */
+    byte[] errorHash() {
+        for (MessageDigest md : digests) {
+            md.reset();
+        }
+        Arrays.fill(result, (byte) 0);
+        return result;
+    }
+
+    /**
+     * Creates hasher for a worker.
+     */
+    @FunctionalInterface
+    interface Factory {
+        /**
+         * Creates hasher.
+         *
+         * @return new hasher.
+         * @throws NoSuchAlgorithmException if digest algorithm is not supported.
+         */
+        FileHasher create() throws NoSuchAlgorithmException;
+    }
+}
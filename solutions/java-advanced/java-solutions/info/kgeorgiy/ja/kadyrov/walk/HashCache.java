@@ -0,0 +1,302 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of file digests keyed by path, size, modification time and file key.
+ * Stored as an append-only log of checksummed records, which is loaded into an in-memory index on open.
+ * A torn record at the end of the log, left by a crash, is dropped on the next open.
+ * Superseded records are removed by {@link #compact()}, which atomically replaces the log.
+ * Files modified within {@link #RACY_NANOS} of the moment they are cached are not cached at all:
+ * they may be changed again within timestamp granularity and keep the same modification time.
+ * Instances are thread-safe.
+ *
+ * @author Kadyrov Rustam.
+ */
+class HashCache implements AutoCloseable {
+    /**
+     * Longest digest which can be cached.
+     */
+    static final int MAX_DIGEST_LENGTH = 0xFFFF;
+    private static final long MAGIC = 0x57414C4B43414348L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    /**
+     * Coarsest modification time granularity of common file systems.
+     */
+    private static final long RACY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final Path file;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private FileChannel channel;
+    private long records;
+
+    private HashCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens cache, creating log file if it does not exist.
+     *
+     * @param file path to log file.
+     * @return opened cache.
+     * @throws IOException if an I/O error occurs or file is not a hash cache.
+     */
+    static HashCache open(Path file) throws IOException {
+        HashCache cache = new HashCache(file);
+        cache.load();
+        return cache;
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                channel.write(header());
+                return;
+            }
+            long valid = readLog();
+            if (channel.size() > valid) {
+                System.err.println("Dropping damaged tail of hash cache " + file);
+                channel.truncate(valid);
+            }
+            channel.position(valid);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private long readLog() throws IOException {
+        // Not closed, closing the stream would close the channel
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        try {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a hash cache: " + file);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Not a hash cache: " + file);
+        }
+        long valid = HEADER_SIZE;
+        try {
+            while (true) {
+                int size = in.readInt();
+                if (size <= 0 || size > MAX_RECORD_SIZE) {
+                    break;
+                }
+                byte[] record = new byte[size];
+                in.readFully(record);
+                if (in.readLong() != checksum(record)) {
+                    break;
+                }
+                Entry entry = Entry.decode(record);
+                index.put(entry.path, entry);
+                records++;
+                valid += Integer.BYTES + size + Long.BYTES;
+            }
+        } catch (EOFException ignored) {
+            // Torn record at the end of the log
+        }
+        return valid;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putLong(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static ByteBuffer frame(Entry entry) {
+        byte[] record = entry.encode();
+        return ByteBuffer.allocate(Integer.BYTES + record.length + Long.BYTES)
+                .putInt(record.length).put(record).putLong(checksum(record)).flip();
+    }
+
+    private static long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return crc.getValue();
+    }
+
+    /**
+     * Returns cached digest, if file was not changed since it was hashed.
+     *
+     * @param path       hashed file.
+     * @param attributes current file attributes.
+     * @param algorithm  digest algorithms separated by commas.
+     * @return cached concatenated digests or {@code null}.
+     */
+    byte[] get(Path path, BasicFileAttributes attributes, String algorithm) {
+        Entry entry = index.get(key(path));
+        if (entry != null && entry.matches(attributes, algorithm)) {
+            hits.increment();
+            return entry.digest;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores digest of the file, unless the file is racily clean:
+     * modified less than {@link #RACY_NANOS} ago or in the future.
+     *
+     * @param path       hashed file.
+     * @param attributes file attributes read before hashing.
+     * @param algorithm  digest algorithms separated by commas.
+     * @param digest     concatenated file digests.
+     * @throws IOException if an I/O error occurs while appending to the log.
+     */
+    void put(Path path, BasicFileAttributes attributes, String algorithm, byte[] digest) throws IOException {
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        if (modifiedOf(attributes) > now - RACY_NANOS) {
+            return;
+        }
+        Entry entry = new Entry(key(path), attributes.size(), modifiedOf(attributes), fileKeyOf(attributes),
+                algorithm, digest.clone());
+        ByteBuffer buffer = frame(entry);
+        synchronized (this) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            records++;
+            index.put(entry.path, entry);
+        }
+    }
+
+    /**
+     * Rewrites the log with live records only.
+     * New log is written to a temporary file, which atomically replaces the old one.
+     * If the log cannot be replaced, the old one stays open and the cache remains usable.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Not closed, closing the stream would close the channel
+            OutputStream data = new BufferedOutputStream(Channels.newOutputStream(out));
+            data.write(header().array());
+            for (Entry entry : index.values()) {
+                data.write(frame(entry).array());
+            }
+            data.flush();
+            out.force(true);
+        }
+        // Open file cannot be replaced on some platforms
+        channel.close();
+        try {
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            records = index.size();
+        } finally {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Returns number of lookups answered from the cache.
+     *
+     * @return number of hits.
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of lookups which required hashing.
+     *
+     * @return number of misses.
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Compacts the log, if most of its records are superseded, and closes it.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (records > COMPACT_MIN_RECORDS && records > COMPACT_RATIO * (long) index.size()) {
+            compact();
+        }
+        channel.force(true);
+        channel.close();
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static long modifiedOf(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKeyOf(BasicFileAttributes attributes) {
+        return String.valueOf(attributes.fileKey());
+    }
+
+    /**
+     * Cached digest with attributes of the file it was computed for.
+     */
+    private record Entry(String path, long size, long modified, String fileKey, String algorithm, byte[] digest) {
+        private boolean matches(BasicFileAttributes attributes, String algorithm) {
+            return size == attributes.size()
+                    && modified == modifiedOf(attributes)
+                    && fileKey.equals(fileKeyOf(attributes))
+                    && this.algorithm.equals(algorithm);
+        }
+
+        private byte[] encode() {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeUTF(path);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeUTF(fileKey);
+                out.writeUTF(algorithm);
+                out.writeShort(digest.length);
+                out.write(digest);
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static Entry decode(byte[] record) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            String path = in.readUTF();
+            long size = in.readLong();
+            long modified = in.readLong();
+            String fileKey = in.readUTF();
+            String algorithm = in.readUTF();
+            byte[] digest = new byte[in.readUnsignedShort()];
+            in.readFully(digest);
+            return new Entry(path, size, modified, fileKey, algorithm, digest);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@code hash file} lines straight to a {@link FileChannel}.
+ * Digests are hex-encoded and file names are UTF-8 encoded into a reusable direct buffer,
+ * so writing a line does not allocate.
+ * Instances are not thread-safe.
+ *
+ * @author Kadyrov Rustam.
+ */
+class HashWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final FileChannel channel;
+    private final int[] columns;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private HashWriter(FileChannel channel, int[] columns) {
+        this.channel = channel;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates or truncates output file.
+     *
+     * @param file    output file.
+     * @param columns length of every digest in bytes.
+     * @return opened writer.
+     * @throws IOException if an I/O error occurs.
+     */
+    static HashWriter open(Path file, int[] columns) throws IOException {
+        return new HashWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), columns);
+    }
+
+    /**
+     * Writes one line: hex digests separated by spaces and the file name.
+     *
+     * @param digest concatenated digests.
+     * @param file   hashed file.
+     * @throws IOException if an I/O error occurs.
+     */
+    void write(byte[] digest, String file) throws IOException {
+        int offset = 0;
+        for (int column : columns) {
+            ensure(2 * column + 1);
+            putHex(digest, offset, column);
+            buffer.put((byte) ' ');
+            offset += column;
+        }
+        writeUtf8(file);
+        ensure(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Overwrites digests of a line which is already written.
+     * Digests have fixed width, so the rest of the line is kept.
+     *
+     * @param position position of the line in the file.
+     * @param digest   concatenated digests.
+     * @throws IOException if an I/O error occurs.
+     */
+    void rewrite(long position, byte[] digest) throws IOException {
+        flush();
+        int offset = 0;
+        for (int column : columns) {
+            putHex(digest, offset, column);
+            buffer.put((byte) ' ');
+            offset += column;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns length in bytes of the line written for the file.
+     *
+     * @param file hashed file.
+     * @return length of the line including line separator.
+     */
+    long lineLength(String file) {
+        long length = LINE_SEPARATOR.length;
+        for (int column : columns) {
+            length += 2L * column + 1;
+        }
+        for (int i = 0; i < file.length(); i++) {
+            char c = file.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < file.length()
+                    && Character.isLowSurrogate(file.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void putHex(byte[] digest, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            buffer.put(HEX[(digest[i] >> 4) & 0xF]).put(HEX[digest[i] & 0xF]);
+        }
+    }
+
+    private void writeUtf8(String file) throws IOException {
+        for (int i = 0; i < file.length(); i++) {
+            ensure(MAX_CHAR_BYTES);
+            char c = file.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < file.length()
+                    && Character.isLowSurrogate(file.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, file.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18))
+                        .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                        .put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12))
+                        .put((byte) (0x80 | c >> 6 & 0x3F))
+                        .put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes buffered lines to the file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Hands out file tasks to workers so that devices are not thrashed.
+ * Tasks are grouped by the {@link FileStore} of the file, at most {@code perStore} tasks
+ * of one store run at the same time, and stores are served in turn.
+ * Within a store, tasks are taken in inode order, which approximates physical order on most file systems,
+ * files without inode are taken in path order.
+ * Throughput of every store is collected and can be {@link #report(PrintStream) reported}.
+ * Tasks are submitted by a single thread and taken by any number of workers.
+ *
+ * @param <T> type of tasks.
+ * @author Kadyrov Rustam.
+ */
+class IoScheduler<T> {
+    private static final Comparator<Job<?>> ORDER = Comparator.<Job<?>>comparingLong(job -> job.inode)
+            .thenComparing(job -> job.file)
+            .thenComparingLong(job -> job.sequence);
+
+    private static final String INODE = "ino=";
+
+    private final int perStore;
+    private final Map<Path, Store> byParent = new HashMap<>();
+    private final Map<FileStore, Store> byStore = new HashMap<>();
+    private final Store unknown = new Store("unknown");
+    private final List<Store> stores = new ArrayList<>(List.of(unknown));
+    private Path lastParent;
+    private Store lastStore;
+    private long sequence;
+    private int next;
+
+    /**
+     * Creates scheduler.
+     *
+     * @param perStore maximum number of running tasks of one store.
+     */
+    IoScheduler(int perStore) {
+        this.perStore = perStore;
+    }
+
+    /**
+     * Queues task hashing the file.
+     * Attributes of the file are read in the calling thread with a single call,
+     * file store is looked up once per parent directory.
+     *
+     * @param task task.
+     * @param file file hashed by the task.
+     */
+    void submit(T task, String file) {
+        Store store = unknown;
+        long inode = -1;
+        long size = 0;
+        try {
+            Path path = Path.of(file).toAbsolutePath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            size = attributes.size();
+            inode = inode(attributes.fileKey());
+            store = store(path.getParent());
+        } catch (IOException | InvalidPathException | SecurityException e) {
+            // missing files are cheap, order does not matter
+        }
+        synchronized (this) {
+            store.queue.add(new Job<>(task, file, store, inode, size, sequence++));
+            notifyAll();
+        }
+    }
+
+    /**
+     * Extracts inode from a file key, which is {@code (dev=...,ino=...)} on Unix.
+     */
+    private static long inode(Object fileKey) {
+        if (fileKey == null) {
+            return -1;
+        }
+        String key = fileKey.toString();
+        int from = key.indexOf(INODE);
+        if (from < 0) {
+            return -1;
+        }
+        from += INODE.length();
+        int to = from;
+        while (to < key.length() && Character.isDigit(key.charAt(to))) {
+            to++;
+        }
+        try {
+            return Long.parseLong(key, from, to, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Store store(Path parent) throws IOException {
+        if (parent == null) {
+            return unknown;
+        }
+        // Files of a directory are usually listed together
+        if (parent.equals(lastParent)) {
+            return lastStore;
+        }
+        Store store = byParent.get(parent);
+        if (store == null) {
+            FileStore fileStore = Files.getFileStore(parent);
+            synchronized (this) {
+                store = byStore.get(fileStore);
+                if (store == null) {
+                    store = new Store(fileStore.toString());
+                    byStore.put(fileStore, store);
+                    stores.add(store);
+                }
+            }
+            byParent.put(parent, store);
+        }
+        lastParent = parent;
+        lastStore = store;
+        return store;
+    }
+
+    /**
+     * Takes next task, waiting until a task of a store below its limit is available.
+     *
+     * @return next job, must be passed to {@link #done(Job)} when finished.
+     * @throws InterruptedException if calling thread was interrupted.
+     */
+    synchronized Job<T> take() throws InterruptedException {
+        while (true) {
+            for (int i = 0; i < stores.size(); i++) {
+                Store store = stores.get((next + i) % stores.size());
+                if (store.running < perStore && !store.queue.isEmpty()) {
+                    next = (next + i + 1) % stores.size();
+                    store.running++;
+                    if (store.start == 0) {
+                        store.start = System.nanoTime();
+                    }
+                    @SuppressWarnings("unchecked")
+                    Job<T> job = (Job<T>) store.queue.poll();
+                    return job;
+                }
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Marks job as finished.
+     *
+     * @param job finished job.
+     */
+    synchronized void done(Job<T> job) {
+        Store store = job.store;
+        store.running--;
+        store.files++;
+        store.bytes += job.size;
+        store.end = System.nanoTime();
+        notifyAll();
+    }
+
+    /**
+     * Prints number of files, bytes and throughput of every store which was read.
+     *
+     * @param out output stream.
+     */
+    synchronized void report(PrintStream out) {
+        for (Store store : stores) {
+            if (store.bytes == 0) {
+                continue;
+            }
+            double seconds = Math.max(store.end - store.start, 1) / 1e9;
+            double mib = store.bytes / (1024.0 * 1024.0);
+            out.printf("Store %s: %d files, %.1f MiB, %.1f MiB/s%n", store.name, store.files, mib, mib / seconds);
+        }
+    }
+
+    /**
+     * Scheduled task.
+     *
+     * @param <T> type of task.
+     */
+    static class Job<T> {
+        private final T task;
+        private final String file;
+        private final Store store;
+        private final long inode;
+        private final long size;
+        private final long sequence;
+
+        private Job(T task, String file, Store store, long inode, long size, long sequence) {
+            this.task = task;
+            this.file = file;
+            this.store = store;
+            this.inode = inode;
+            this.size = size;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns submitted task.
+         *
+         * @return task.
+         */
+        T task() {
+            return task;
+        }
+    }
+
+    /**
+     * Queue and statistics of one file store.
+     */
+    private static class Store {
+        private final String name;
+        private final PriorityQueue<Job<?>> queue = new PriorityQueue<>(ORDER);
+        private int running;
+        private long files;
+        private long bytes;
+        private long start;
+        private long end;
+
+        private Store(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes files on a pool of workers and writes results in input order.
+ * At most {@code threads * WINDOW_PER_THREAD} files are in flight, so memory
+ * stays bounded however far ahead the workers get.
+ * Every slot of the window owns its digest buffer, so hashing and writing do not allocate per file.
+ * Files in the window are handed out to workers by an {@link IoScheduler}, which limits
+ * concurrency per file store and sorts files of a store in physical order.
+ *
+ * @author Kadyrov Rustam.
+ */
+class ParallelHasher implements Walker {
+    private static final int WINDOW_PER_THREAD = 64;
+
+    private final ExecutorService workers;
+    private final IoScheduler<Slot> scheduler;
+    private final WalkMetrics metrics;
+    private final Slot[] window;
+    private final boolean report;
+
+    /**
+     * Starts one worker per hasher.
+     *
+     * @param hashers  hashers, one for every worker.
+     * @param perStore maximum number of files of one file store hashed at the same time.
+     * @param metrics  metrics of the walk.
+     * @param report   whether throughput of file stores is printed to {@code System.err} after the walk.
+     */
+    ParallelHasher(List<FileHasher> hashers, int perStore, WalkMetrics metrics, boolean report) {
+        int length = Arrays.stream(hashers.get(0).digestLengths()).sum();
+        this.window = new Slot[hashers.size() * WINDOW_PER_THREAD];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = new Slot(length);
+        }
+        this.scheduler = new IoScheduler<>(perStore);
+        this.metrics = metrics;
+        this.report = report;
+        this.workers = Executors.newFixedThreadPool(hashers.size());
+        for (FileHasher hasher : hashers) {
+            workers.submit(getTask(hasher));
+        }
+    }
+
+    private Runnable getTask(FileHasher hasher) {
+        return () -> {
+            try {
+                while (!Thread.interrupted()) {
+                    IoScheduler.Job<Slot> job = scheduler.take();
+                    metrics.queued(-1);
+                    metrics.running(1);
+                    Slot slot = job.task();
+                    try {
+                        slot.complete(hasher.hash(slot.file));
+                    } catch (Throwable e) {
+                        // Slot must be completed anyway, otherwise writing blocks forever
+                        System.err.println("Cannot hash " + slot.file + " " + e.getMessage());
+                        metrics.error(e);
+                        slot.complete(hasher.errorHash());
+                    } finally {
+                        scheduler.done(job);
+                        metrics.running(-1);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            }
+        };
+    }
+
+    /**
+     * Hashes every file listed in reader and writes {@code hash file} lines in the same order.
+     */
+    @Override
+    public void walk(BufferedReader reader, HashWriter writer) throws IOException, InterruptedException {
+        long submitted = 0;
+        long written = 0;
+        String line = reader.readLine();
+        while (line != null) {
+            if (submitted - written == window.length) {
+                write(slot(written++), writer);
+            }
+            Slot slot = slot(submitted++);
+            slot.reset(line);
+            metrics.queued(1);
+            scheduler.submit(slot, line);
+            line = reader.readLine();
+        }
+        while (written < submitted) {
+            write(slot(written++), writer);
+        }
+        if (report) {
+            scheduler.report(System.err);
+        }
+    }
+
+    private Slot slot(long index) {
+        return window[(int) (index % window.length)];
+    }
+
+    private static void write(Slot slot, HashWriter writer) throws IOException, InterruptedException {
+        writer.write(slot.await(), slot.file);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Workers were not terminated");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Position in the reorder window.
+     */
+    private static class Slot {
+        private final byte[] digest;
+        private String file;
+        private boolean done;
+
+        private Slot(int length) {
+            this.digest = new byte[length];
+        }
+
+        private synchronized void reset(String file) {
+            this.file = file;
+            this.done = false;
+        }
+
+        private synchronized void complete(byte[] digest) {
+            System.arraycopy(digest, 0, this.digest, 0, this.digest.length);
+            this.done = true;
+            notify();
+        }
+
+        private synchronized byte[] await() throws InterruptedException {
+            while (!done) {
+                wait();
+            }
+            return digest;
+        }
+    }
+}
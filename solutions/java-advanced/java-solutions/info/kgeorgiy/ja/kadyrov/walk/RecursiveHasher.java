@@ -0,0 +1,289 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Walks directory trees on a {@link ForkJoinPool} and hashes files as they are found.
+ * Every directory is a separate task, files are hashed in batches of {@link #BATCH_SIZE}.
+ * Tasks never wait for their children, so deep trees do not grow the stack,
+ * and a task with too many unfinished children helps to complete them before listing further,
+ * so wide directories do not fill the heap with queued tasks.
+ * Results are written as soon as they are ready, in no particular order.
+ * A file, which cannot be hashed for any reason, gets zero digests and the walk goes on, as in {@link ParallelHasher}.
+ *
+ * @author Kadyrov Rustam.
+ */
+class RecursiveHasher implements Walker {
+    private static final int BATCH_SIZE = 64;
+    private static final int MAX_PENDING = 256;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<FileHasher> hashers;
+    private final Semaphore inputs;
+    private final WalkMetrics metrics;
+    private final byte[] errorHash;
+    private final AtomicReference<IOException> error = new AtomicReference<>();
+    private HashWriter writer;
+
+    /**
+     * Creates pool with given parallelism.
+     *
+     * @param threads number of workers.
+     * @param factory creates hasher for every worker.
+     * @param metrics metrics of the walk.
+     * @throws NoSuchAlgorithmException if digest algorithm is not supported.
+     */
+    RecursiveHasher(int threads, FileHasher.Factory factory, WalkMetrics metrics) throws NoSuchAlgorithmException {
+        // fails fast, if the algorithm is not supported
+        this.errorHash = factory.create().errorHash().clone();
+        this.pool = new ForkJoinPool(threads);
+        this.hashers = ThreadLocal.withInitial(() -> {
+            try {
+                return factory.create();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        this.inputs = new Semaphore(threads * MAX_PENDING);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Hashes every file listed in reader and all files in listed directories.
+     */
+    @Override
+    public void walk(BufferedReader reader, HashWriter writer) throws IOException, InterruptedException {
+        this.writer = writer;
+        Root root = new Root();
+        String line = reader.readLine();
+        while (line != null && error.get() == null && !root.isCompletedAbnormally()) {
+            inputs.acquire();
+            metrics.queued(1);
+            root.addToPendingCount(1);
+            pool.execute(new InputTask(root, line));
+            line = reader.readLine();
+        }
+        root.tryComplete();
+        root.await();
+        if (error.get() != null) {
+            throw error.get();
+        }
+        Throwable failure = root.getException();
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        } else if (failure instanceof Error e) {
+            throw e;
+        } else if (failure != null) {
+            throw new IOException("Walk failed", failure);
+        }
+    }
+
+    private void write(byte[] digest, String file) {
+        if (error.get() != null) {
+            return;
+        }
+        try {
+            synchronized (writer) {
+                writer.write(digest, file);
+            }
+        } catch (IOException e) {
+            error.compareAndSet(null, e);
+        }
+    }
+
+    private void hash(String file) {
+        metrics.running(1);
+        try {
+            write(hashers.get().hash(file), file);
+        } catch (RuntimeException | Error e) {
+            // A broken file must not abort the walk, hasher of the worker could be left midway and is replaced
+            System.err.println("Cannot hash " + file + " " + e.getMessage());
+            hashers.remove();
+            writeError(file, e);
+        } finally {
+            metrics.running(-1);
+        }
+    }
+
+    private void writeError(String file, Throwable e) {
+        metrics.error(e);
+        write(errorHash, file);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Workers were not terminated");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Completes when all input lines are processed or some task throws.
+     */
+    @SuppressWarnings("serial")
+    private static class Root extends CountedCompleter<Void> {
+        private boolean completed;
+
+        private Root() {
+            super(null);
+        }
+
+        @Override
+        public void compute() {
+        }
+
+        @Override
+        public synchronized void onCompletion(CountedCompleter<?> caller) {
+            completed = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean onExceptionalCompletion(Throwable e, CountedCompleter<?> caller) {
+            // Exception is kept by the task and rethrown by walk
+            completed = true;
+            notifyAll();
+            return true;
+        }
+
+        private synchronized void await() throws InterruptedException {
+            while (!completed) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Processes one input line: hashes a file or walks a directory.
+     */
+    @SuppressWarnings("serial")
+    private class InputTask extends CountedCompleter<Void> {
+        private final String line;
+
+        private InputTask(CountedCompleter<?> parent, String line) {
+            super(parent);
+            this.line = line;
+        }
+
+        @Override
+        public void compute() {
+            metrics.queued(-1);
+            try {
+                Path path = Path.of(line);
+                if (Files.isDirectory(path)) {
+                    addToPendingCount(1);
+                    new DirectoryTask(this, path).fork();
+                } else {
+                    hash(line);
+                }
+            } catch (InvalidPathException | SecurityException e) {
+                writeError(line, e);
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            // Permit was released when the task failed
+            if (!isCompletedAbnormally()) {
+                inputs.release();
+            }
+        }
+
+        @Override
+        public boolean onExceptionalCompletion(Throwable e, CountedCompleter<?> caller) {
+            inputs.release();
+            return true;
+        }
+    }
+
+    /**
+     * Lists one directory, forks its subdirectories and batches of its files.
+     */
+    @SuppressWarnings("serial")
+    private class DirectoryTask extends CountedCompleter<Void> {
+        private final Path dir;
+
+        private DirectoryTask(CountedCompleter<?> parent, Path dir) {
+            super(parent);
+            this.dir = dir;
+        }
+
+        @Override
+        public void compute() {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (error.get() != null) {
+                        break;
+                    }
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        fork(new DirectoryTask(this, entry));
+                    } else {
+                        batch.add(entry.toString());
+                        if (batch.size() == BATCH_SIZE) {
+                            fork(new FilesTask(this, batch));
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException | UncheckedIOException | SecurityException e) {
+                writeError(dir.toString(), e);
+            }
+            if (!batch.isEmpty()) {
+                fork(new FilesTask(this, batch));
+            }
+            tryComplete();
+        }
+
+        private void fork(CountedCompleter<Void> task) {
+            addToPendingCount(1);
+            task.fork();
+            if (getPendingCount() > MAX_PENDING) {
+                helpComplete(MAX_PENDING / 2);
+            }
+        }
+    }
+
+    /**
+     * Hashes a batch of files.
+     */
+    @SuppressWarnings("serial")
+    private class FilesTask extends CountedCompleter<Void> {
+        private final List<String> files;
+
+        private FilesTask(CountedCompleter<?> parent, List<String> files) {
+            super(parent);
+            this.files = files;
+        }
+
+        @Override
+        public void compute() {
+            for (String file : files) {
+                hash(file);
+            }
+            tryComplete();
+        }
+    }
+}
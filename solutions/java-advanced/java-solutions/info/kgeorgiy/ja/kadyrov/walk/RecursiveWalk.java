@@ -1,4 +1,20 @@
 package info.kgeorgiy.ja.kadyrov.walk;
 
+/**
+ * Writes digests of every file listed in the input file and of every file in listed directories.
+ * Directories are walked in parallel on a fork-join pool.
+ * Command line format: {@code RecursiveWalk input output [--threads N] [--cache FILE] [--algorithms A1,A2,...]
+ * [--tree-chunk BYTES] [--progress SECONDS]}.
+ *
+ * @author Kadyrov Rustam.
+ */
 public class RecursiveWalk {
-}
\ No newline at end of file
+    public static void main(String[] args) {
+        Walk.run(args, (options, hashers, metrics) -> {
+            if (options.watch) {
+                System.err.println("Watch mode is not supported by RecursiveWalk, walking once");
+            }
+            return new RecursiveHasher(options.threads, hashers, metrics);
+        });
+    }
+}
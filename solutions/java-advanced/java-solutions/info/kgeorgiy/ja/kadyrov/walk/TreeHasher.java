@@ -0,0 +1,206 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits files into chunks of fixed size and hashes the chunks in parallel on a shared pool.
+ * Chunk digests of every algorithm are written one after another, chunk after chunk,
+ * and the root digest of the file is the digest of its chunk digests, see {@link FileHasher}.
+ * Chunk digests are logged to a sidecar file as {@code hash offset file} lines,
+ * so that a single chunk of a changed file can be verified later.
+ * If a file was hashed several times, later lines supersede earlier ones.
+ * Instances are thread-safe.
+ *
+ * @author Kadyrov Rustam.
+ */
+class TreeHasher implements AutoCloseable {
+    /**
+     * Largest supported chunk, a chunk is mapped as a single buffer.
+     */
+    static final long MAX_CHUNK_SIZE = 1 << 30;
+    /**
+     * Smallest supported chunk, smaller chunks cost more in tasks and mappings than in hashing.
+     */
+    static final long MIN_CHUNK_SIZE = 1 << 12;
+    /**
+     * Largest number of chunks of a file, chunk digests of a file are kept in one array.
+     */
+    static final long MAX_CHUNKS = 1 << 20;
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final long chunkSize;
+    private final List<String> algorithms;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<MessageDigest[]> digests;
+    private final BufferedWriter log;
+
+    private TreeHasher(long chunkSize, int threads, List<String> algorithms, BufferedWriter log) {
+        this.chunkSize = chunkSize;
+        this.algorithms = algorithms;
+        this.pool = new ForkJoinPool(threads);
+        this.digests = ThreadLocal.withInitial(this::createDigests);
+        this.log = log;
+    }
+
+    /**
+     * Creates hasher, creating or truncating chunk log.
+     *
+     * @param log        chunk log file.
+     * @param chunkSize  size of a chunk in bytes.
+     * @param threads    number of threads hashing chunks.
+     * @param algorithms digest algorithms.
+     * @return new hasher.
+     * @throws IOException if an I/O error occurs.
+     */
+    static TreeHasher open(Path log, long chunkSize, int threads, List<String> algorithms) throws IOException {
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be in range " + MIN_CHUNK_SIZE + ".." + MAX_CHUNK_SIZE);
+        }
+        return new TreeHasher(chunkSize, threads, algorithms, Files.newBufferedWriter(log, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns description of the mode, which is a part of cache keys.
+     *
+     * @return mode description.
+     */
+    String spec() {
+        return "tree:" + chunkSize;
+    }
+
+    /**
+     * Hashes every chunk of the file.
+     * Chunks are submitted in batches of a few tasks per thread, so a large file does not queue a task per chunk.
+     *
+     * @param channel opened file.
+     * @param size    size of the file.
+     * @param width   total length of digests of one chunk.
+     * @return concatenated chunk digests.
+     * @throws IOException if an I/O error occurs, file has more than {@link #MAX_CHUNKS} chunks
+     *                     or a chunk cannot be hashed.
+     */
+    byte[] hashChunks(FileChannel channel, long size, int width) throws IOException {
+        long chunks = size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
+        if (chunks > MAX_CHUNKS) {
+            throw new IOException("File of " + size + " bytes has more than " + MAX_CHUNKS
+                    + " chunks of " + chunkSize + " bytes");
+        }
+        byte[] result = new byte[Math.toIntExact(chunks * width)];
+        int batch = pool.getParallelism() * TASKS_PER_THREAD;
+        List<Callable<Void>> tasks = new ArrayList<>(batch);
+        for (long from = 0; from < chunks; from += batch) {
+            tasks.clear();
+            for (long index = from; index < Math.min(chunks, from + batch); index++) {
+                long position = index * chunkSize;
+                int offset = Math.toIntExact(index * width);
+                tasks.add(() -> {
+                    hashChunk(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position)),
+                            result, offset);
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+        }
+        return result;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) throws IOException {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing chunks");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Cannot hash chunk", e.getCause());
+        }
+    }
+
+    private void hashChunk(MappedByteBuffer chunk, byte[] result, int offset) throws DigestException {
+        MessageDigest[] mds = digests.get();
+        try {
+            for (MessageDigest md : mds) {
+                chunk.rewind();
+                md.update(chunk);
+                offset += md.digest(result, offset, md.getDigestLength());
+            }
+        } catch (Throwable e) {
+            // Digests are reused by the thread, a partial update would corrupt its next chunk
+            for (MessageDigest md : mds) {
+                md.reset();
+            }
+            throw e;
+        }
+    }
+
+    private MessageDigest[] createDigests() {
+        try {
+            MessageDigest[] result = new MessageDigest[algorithms.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = FileHasher.getDigest(algorithms.get(i));
+            }
+            return result;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Logs chunk digests of the file.
+     *
+     * @param file    hashed file.
+     * @param chunks  array containing concatenated chunk digests.
+     * @param offset  offset of the first chunk digest.
+     * @param lengths length of every digest of a chunk.
+     * @throws IOException if an I/O error occurs.
+     */
+    void log(String file, byte[] chunks, int offset, int[] lengths) throws IOException {
+        HexFormat hex = HexFormat.of();
+        StringBuilder lines = new StringBuilder();
+        for (long position = 0; offset < chunks.length; position += chunkSize) {
+            for (int length : lengths) {
+                hex.formatHex(lines, chunks, offset, offset + length).append(' ');
+                offset += length;
+            }
+            lines.append(position).append(' ').append(file).append(System.lineSeparator());
+        }
+        synchronized (log) {
+            log.write(lines.toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Workers were not terminated");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+}
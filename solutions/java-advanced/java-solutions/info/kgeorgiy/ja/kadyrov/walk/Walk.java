@@ -2,39 +2,87 @@ package info.kgeorgiy.ja.kadyrov.walk;
 
 
 import java.io.*;
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
+/**
+ * Writes digests of every file listed in the input file, SHA-256 by default.
+ * Every line contains one hex digest per algorithm followed by the file name.
+ * Command line format: {@code Walk input output [--threads N] [--per-store N] [--cache FILE]
+ * [--algorithms A1,A2,...] [--watch] [--tree-chunk BYTES] [--progress SECONDS]},
+ * supported algorithms are those of {@link java.security.MessageDigest} and {@code XXH64}.
+ * With {@code --watch} walk keeps running and rewrites lines of files as they change.
+ * With {@code --tree-chunk BYTES} files are hashed in tree mode, see {@link FileHasher},
+ * chunk digests are written to {@code output.chunks}.
+ * At most {@code --per-store} files of one file store are hashed at the same time, all threads by default.
+ * With {@code --progress SECONDS} throughput of every file store is printed to {@code System.err} at the end.
+ * Metrics of the walk are registered as {@value WalkMetrics#OBJECT_NAME} MXBean
+ * and, with {@code --progress SECONDS}, printed to {@code System.err} periodically.
+ *
+ * @author Kadyrov Rustam.
+ */
 public class Walk {
-    private static String hashingFile(String str, MessageDigest md) {
-        byte[] result = new byte[1024];
-        try (InputStream reader = new FileInputStream(str)) {
-            int c = 0;
-            while ((c = reader.read(result)) >= 0) {
-                md.update(result, 0, c);
-            }
-            byte[] digest = md.digest();
-            return String.format("%0" + (digest.length << 1) + "x", new BigInteger(1, digest));
-        } catch (IOException | SecurityException e) {
-            return "0".repeat(64);
+    public static void main(String[] args) {
+        run(args);
+    }
+
+    /**
+     * Runs walk with the given command line.
+     *
+     * @param args command line arguments.
+     * @return whether every file was hashed, see {@link #run(String[], Walker.Factory)}.
+     */
+    static boolean run(String[] args) {
+        return run(args, Walk::create);
+    }
+
+    private static Walker create(WalkOptions options, FileHasher.Factory hashers, WalkMetrics metrics)
+            throws NoSuchAlgorithmException {
+        Walker walker = new ParallelHasher(hashers(options.threads, hashers), options.perStore, metrics,
+                options.progress != 0);
+        if (!options.watch) {
+            return walker;
+        }
+        try {
+            return new WatchingWalker(walker, hashers.create());
+        } catch (IOException e) {
+            System.err.println("Cannot create watch service, walking once" + " " + e.getMessage());
+            return walker;
         }
     }
 
-    public static void main(String[] args) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.err.println("Incorrect arguments");
-            return;
+    /**
+     * Parses command line, opens input and output files and runs walker created by factory.
+     *
+     * @param args    command line arguments.
+     * @param factory creates walker for parsed options.
+     * @return whether every file was hashed, errors are printed to {@code System.err}.
+     */
+    static boolean run(String[] args, Walker.Factory factory) {
+        final WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Incorrect arguments" + " " + e.getMessage());
+            return false;
         }
+        WalkMetrics metrics = new WalkMetrics();
+        boolean registered = metrics.register();
+        ScheduledExecutorService progress = options.progress == 0 ? null : progress(metrics, options.progress);
+        boolean completed = false;
         try {
-            Path input = Paths.get(args[0]);
-            Path output = Paths.get(args[1]);
+            Path input = Paths.get(options.input);
+            Path output = Paths.get(options.output);
             try {
                 Path parent = output.getParent();
                 if (parent != null) {
@@ -42,36 +90,71 @@ public class Walk {
                 }
             } catch (IOException | SecurityException e) {
                 System.err.println("Cannot creating dirs" + " " + e.getMessage());
-                return;
+                return false;
             }
-            try {
-                MessageDigest md = MessageDigest.getInstance("SHA-256");
-                try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
-                    try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
-                        String line = reader.readLine();
-                        while (line != null) {
-                            String hash = hashingFile(line, md);
-                            writer.write(hash + " " + line);
-                            writer.newLine();
-                            line = reader.readLine();
-                        }
-                    } catch (SecurityException e) {
-                        System.err.println("Security error while writing a file" + " " + e.getMessage());
-                    } catch (IOException e) {
-                        System.err.println("An error occurs while writing a file" + " " + e.getMessage());
-                    }
+            try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                 HashCache cache = options.cache == null ? null : HashCache.open(Paths.get(options.cache))) {
+                try (HashWriter writer = HashWriter.open(output, FileHasher.digestLengths(options.algorithms));
+                     TreeHasher tree = options.treeChunk == 0 ? null : TreeHasher.open(
+                             Paths.get(options.output + ".chunks"), options.treeChunk, options.threads, options.algorithms);
+                     Walker walker = factory.create(options,
+                             () -> new FileHasher(options.algorithms, cache, tree, metrics), metrics)) {
+                    walker.walk(reader, writer);
+                    completed = true;
                 } catch (SecurityException e) {
-                    System.err.println("Security error while reading a file" + " " + e.getMessage());
+                    System.err.println("Security error while writing a file" + " " + e.getMessage());
                 } catch (IOException e) {
-                    System.err.println("An error occurs while reading a file" + " " + e.getMessage());
+                    System.err.println("An error occurs while writing a file" + " " + e.getMessage());
+                } catch (InterruptedException e) {
+                    System.err.println("Walk was interrupted" + " " + e.getMessage());
+                } catch (NoSuchAlgorithmException e) {
+                    System.err.println("Incorrect Algorithm");
+                }
+                if (cache != null) {
+                    System.out.println("Hash cache: " + cache.hits() + " hits, " + cache.misses() + " misses");
                 }
-            } catch (NoSuchAlgorithmException e) {
-                System.err.println("Incorrect Algorithm");
+            } catch (SecurityException e) {
+                System.err.println("Security error while reading a file" + " " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("An error occurs while reading a file or hash cache" + " " + e.getMessage());
             }
         } catch (InvalidPathException e) {
             System.err.println("Encountered an invalid character." + " " + e.getMessage());
+        } finally {
+            if (progress != null) {
+                progress.shutdownNow();
+                System.err.println(metrics.progress());
+            }
+            if (registered) {
+                metrics.unregister();
+            }
         }
+        return completed && metrics.getErrorCounts().isEmpty();
     }
-}
 
+    private static ScheduledExecutorService progress(WalkMetrics metrics, int seconds) {
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> System.err.println(metrics.progress()), seconds, seconds, TimeUnit.SECONDS);
+        return progress;
+    }
 
+    /**
+     * Creates hasher for every worker.
+     *
+     * @param threads number of workers.
+     * @param factory creates hasher.
+     * @return list of hashers.
+     * @throws NoSuchAlgorithmException if digest algorithm is not supported.
+     */
+    static List<FileHasher> hashers(int threads, FileHasher.Factory factory) throws NoSuchAlgorithmException {
+        List<FileHasher> hashers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            hashers.add(factory.create());
+        }
+        return hashers;
+    }
+}
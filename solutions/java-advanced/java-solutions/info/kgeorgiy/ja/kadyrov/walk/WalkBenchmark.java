@@ -0,0 +1,127 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import info.kgeorgiy.ja.kadyrov.bench.Harness;
+import info.kgeorgiy.ja.kadyrov.bench.SyntheticTree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Throughput benchmarks of {@link Walk} end to end and of {@link FileHasher} in isolation on synthetic trees.
+ * Command line format: {@code WalkBenchmark dir [--trees tiny,huge,mixed,giant] [--threads 1,4,8]
+ * [--buffers 65536,1048576] [--results PREFIX] [--quick]}.
+ * Trees are generated in {@code dir}, results are written to {@code PREFIX.json} and {@code PREFIX.csv},
+ * {@code dir/results} by default. With {@code --quick} fewer and shorter iterations are run.
+ * A walk which fails or cannot hash some file fails the benchmark rather than being measured.
+ *
+ * @author Kadyrov Rustam.
+ */
+public class WalkBenchmark {
+    private static final double MIB = 1024.0 * 1024.0;
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args[0] == null) {
+            System.err.println("Usage: WalkBenchmark dir [--trees tiny,huge,mixed,giant] [--threads 1,4,8] "
+                    + "[--buffers 65536,1048576] [--results PREFIX] [--quick]");
+            return;
+        }
+        try {
+            Path dir = Files.createDirectories(Path.of(args[0]));
+            List<SyntheticTree> trees = List.of(SyntheticTree.values());
+            int[] threads = {1, 4, 8};
+            int[] buffers = {1 << 16, FileHasher.BUFFER_SIZE};
+            Path results = dir.resolve("results");
+            boolean quick = false;
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--trees" -> trees = Arrays.stream(args[++i].split(","))
+                            .map(tree -> SyntheticTree.valueOf(tree.toUpperCase(Locale.ROOT))).toList();
+                    case "--threads" -> threads = parseInts(args[++i]);
+                    case "--buffers" -> buffers = parseInts(args[++i]);
+                    case "--results" -> results = Path.of(args[++i]);
+                    case "--quick" -> quick = true;
+                    default -> throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+            Harness harness = quick
+                    ? new Harness(1, 3, 200_000_000L, System.out)
+                    : new Harness(3, 5, 1_000_000_000L, System.out);
+            for (SyntheticTree tree : trees) {
+                List<Path> files = tree.generate(dir);
+                benchmarkWalk(harness, dir, tree, files, threads);
+                benchmarkHasher(harness, files, buffers);
+            }
+            harness.writeJson(results.resolveSibling(results.getFileName() + ".json"));
+            harness.writeCsv(results.resolveSibling(results.getFileName() + ".csv"));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("Expected value after the last option");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Incorrect arguments" + " " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("An error occurs while generating files or writing results" + " " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Benchmark failed" + " " + e.getMessage());
+        }
+    }
+
+    private static int[] parseInts(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static void benchmarkWalk(Harness harness, Path dir, SyntheticTree tree, List<Path> files,
+                                      int[] threads) throws Exception {
+        String name = tree.name().toLowerCase(Locale.ROOT);
+        Path input = dir.resolve(name + ".list");
+        Files.write(input, files.stream().map(Path::toString).toList(), StandardCharsets.UTF_8);
+        String output = dir.resolve(name + ".out").toString();
+        // Many tiny files are limited by files per second rather than by bytes
+        boolean tiny = tree == SyntheticTree.TINY;
+        for (int count : threads) {
+            harness.run("walk", params("tree", name, "threads", count),
+                    tiny ? "files/s" : "MiB/s", tiny ? tree.files() : tree.bytes() / MIB,
+                    () -> {
+                        if (!Walk.run(new String[]{input.toString(), output, "--threads", String.valueOf(count)})) {
+                            throw new IllegalStateException("Walk of " + name + " tree failed");
+                        }
+                    });
+        }
+    }
+
+    private static void benchmarkHasher(Harness harness, List<Path> files, int[] buffers) throws Exception {
+        Map<Long, Path> bySize = new TreeMap<>();
+        for (Path file : files) {
+            bySize.putIfAbsent(Files.size(file), file);
+        }
+        for (Map.Entry<Long, Path> entry : bySize.entrySet()) {
+            String file = entry.getValue().toString();
+            double mib = entry.getKey() / MIB;
+            for (int buffer : buffers) {
+                FileHasher hasher = new FileHasher(buffer, Long.MAX_VALUE, FileHasher.ALGORITHMS, null, null, null);
+                harness.run("hashFile", params("size", entry.getKey(), "strategy", "buffered", "buffer", buffer),
+                        "MiB/s", mib, () -> hasher.hash(file));
+            }
+            FileHasher mapped = new FileHasher(FileHasher.BUFFER_SIZE, 0, FileHasher.ALGORITHMS, null, null, null);
+            harness.run("hashFile", params("size", entry.getKey(), "strategy", "mapped", "buffer", "-"),
+                    "MiB/s", mib, () -> mapped.hash(file));
+            FileHasher defaults = new FileHasher();
+            harness.run("hashFile", params("size", entry.getKey(), "strategy", "default", "buffer", "-"),
+                    "MiB/s", mib, () -> defaults.hash(file));
+        }
+    }
+
+    private static Map<String, String> params(Object... pairs) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            params.put(pairs[i].toString(), pairs[i + 1].toString());
+        }
+        return params;
+    }
+}
@@ -0,0 +1,195 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms of a walk: files, bytes, per-file latency, errors and queue depths.
+ * Latencies are collected into a histogram with power-of-two buckets,
+ * so recording is a couple of atomic increments.
+ * Instances are thread-safe.
+ *
+ * @author Kadyrov Rustam.
+ */
+class WalkMetrics implements WalkMetricsMXBean {
+    /**
+     * Name under which metrics are {@link #register() registered}.
+     */
+    static final String OBJECT_NAME = "info.kgeorgiy.ja.kadyrov.walk:type=WalkMetrics";
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final AtomicLongArray latencies = new AtomicLongArray(Long.SIZE);
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder running = new LongAdder();
+
+    /**
+     * Records a hashed file.
+     *
+     * @param nanos time spent on the file.
+     * @param read  number of bytes read.
+     */
+    void file(long nanos, long read) {
+        files.increment();
+        bytes.add(read);
+        latencies.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+    }
+
+    /**
+     * Records an error.
+     *
+     * @param e error.
+     */
+    void error(Throwable e) {
+        errors.computeIfAbsent(e.getClass().getSimpleName(), name -> new LongAdder()).increment();
+    }
+
+    /**
+     * Changes number of files waiting for a worker.
+     *
+     * @param delta change.
+     */
+    void queued(int delta) {
+        queued.add(delta);
+    }
+
+    /**
+     * Changes number of files being hashed.
+     *
+     * @param delta change.
+     */
+    void running(int delta) {
+        running.add(delta);
+    }
+
+    @Override
+    public long getFileCount() {
+        return files.sum();
+    }
+
+    @Override
+    public long getByteCount() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return files.sum() / seconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return bytes.sum() / seconds();
+    }
+
+    private double seconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((name, count) -> result.put(name, count.sum()));
+        return result;
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] result = new long[latencies.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = latencies.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public long getMedianLatencyNanos() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return percentile(0.99);
+    }
+
+    private long percentile(double fraction) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getQueuedFiles() {
+        return queued.sum();
+    }
+
+    @Override
+    public long getRunningFiles() {
+        return running.sum();
+    }
+
+    /**
+     * Returns one-line summary of the metrics.
+     *
+     * @return progress line.
+     */
+    String progress() {
+        long errorCount = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        return String.format("Progress: %d files (%.1f/s), %.1f MiB (%.1f MiB/s), %d errors, "
+                        + "queued %d, running %d, latency p50 %.3f ms, p99 %.3f ms",
+                getFileCount(), getFilesPerSecond(), getByteCount() / (1024.0 * 1024.0),
+                getBytesPerSecond() / (1024.0 * 1024.0), errorCount, getQueuedFiles(), getRunningFiles(),
+                getMedianLatencyNanos() / 1e6, getP99LatencyNanos() / 1e6);
+    }
+
+    /**
+     * Registers metrics on the platform MBean server, replacing metrics of a previous walk.
+     *
+     * @return {@code true}, if metrics were registered.
+     */
+    boolean register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            return true;
+        } catch (JMException | SecurityException e) {
+            System.err.println("Cannot register walk metrics" + " " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Unregisters metrics from the platform MBean server.
+     */
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            System.err.println("Cannot unregister walk metrics" + " " + e.getMessage());
+        }
+    }
+}
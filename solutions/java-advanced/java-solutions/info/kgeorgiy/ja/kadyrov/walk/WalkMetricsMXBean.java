@@ -0,0 +1,82 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link WalkMetrics}, registered as
+ * {@value WalkMetrics#OBJECT_NAME} while a walk is running.
+ *
+ * @author Kadyrov Rustam.
+ */
+public interface WalkMetricsMXBean {
+    /**
+     * Returns number of hashed files, including files which could not be read.
+     *
+     * @return number of files.
+     */
+    long getFileCount();
+
+    /**
+     * Returns number of bytes read.
+     *
+     * @return number of bytes.
+     */
+    long getByteCount();
+
+    /**
+     * Returns average number of files hashed per second since start.
+     *
+     * @return files per second.
+     */
+    double getFilesPerSecond();
+
+    /**
+     * Returns average number of bytes read per second since start.
+     *
+     * @return bytes per second.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Returns number of errors by simple name of exception class.
+     *
+     * @return error counts.
+     */
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * Returns latency histogram: element {@code i} is the number of files
+     * hashed in {@code [2^i, 2^(i+1))} nanoseconds.
+     *
+     * @return counts of latency buckets.
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * Returns median per-file hash latency, upper bound of its histogram bucket.
+     *
+     * @return latency in nanoseconds.
+     */
+    long getMedianLatencyNanos();
+
+    /**
+     * Returns 99th percentile of per-file hash latency, upper bound of its histogram bucket.
+     *
+     * @return latency in nanoseconds.
+     */
+    long getP99LatencyNanos();
+
+    /**
+     * Returns number of files waiting for a worker.
+     *
+     * @return queue depth.
+     */
+    long getQueuedFiles();
+
+    /**
+     * Returns number of files being hashed.
+     *
+     * @return number of running tasks.
+     */
+    long getRunningFiles();
+}
@@ -0,0 +1,110 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.util.List;
+
+/**
+ * Command line options of walk.
+ * Command line format: {@code input output [--threads N] [--per-store N] [--cache FILE] [--algorithms A1,A2,...]
+ * [--watch] [--tree-chunk BYTES] [--progress SECONDS]}.
+ *
+ * @author Kadyrov Rustam.
+ */
+class WalkOptions {
+    private static final String THREADS = "--threads";
+    private static final String PER_STORE = "--per-store";
+    private static final String CACHE = "--cache";
+    private static final String ALGORITHMS = "--algorithms";
+    private static final String WATCH = "--watch";
+    private static final String TREE_CHUNK = "--tree-chunk";
+    private static final String PROGRESS = "--progress";
+
+    String input;
+    String output;
+    int threads = 1;
+    int perStore;
+    String cache;
+    List<String> algorithms = FileHasher.ALGORITHMS;
+    boolean watch;
+    long treeChunk;
+    int progress;
+
+    private WalkOptions() {
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args command line arguments.
+     * @return parsed options.
+     * @throws IllegalArgumentException if arguments are incorrect.
+     */
+    static WalkOptions parse(String[] args) {
+        if (args == null || args.length < 2) {
+            throw new IllegalArgumentException("Expected input and output files");
+        }
+        WalkOptions options = new WalkOptions();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+                throw new IllegalArgumentException("Argument can't be null");
+            }
+            switch (args[i]) {
+                case THREADS -> options.threads = parseInt(args, ++i);
+                case PER_STORE -> options.perStore = parseInt(args, ++i);
+                case CACHE -> options.cache = value(args, ++i);
+                case ALGORITHMS -> options.algorithms = List.of(value(args, ++i).split(","));
+                case WATCH -> options.watch = true;
+                case TREE_CHUNK -> options.treeChunk = parseLong(args, ++i);
+                case PROGRESS -> options.progress = parseInt(args, ++i);
+                default -> {
+                    if (options.input == null) {
+                        options.input = args[i];
+                    } else if (options.output == null) {
+                        options.output = args[i];
+                    } else {
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                    }
+                }
+            }
+        }
+        if (options.output == null) {
+            throw new IllegalArgumentException("Expected input and output files");
+        }
+        if (options.perStore == 0) {
+            options.perStore = options.threads;
+        }
+        if (options.treeChunk != 0
+                && (options.treeChunk < TreeHasher.MIN_CHUNK_SIZE || options.treeChunk > TreeHasher.MAX_CHUNK_SIZE)) {
+            throw new IllegalArgumentException(TREE_CHUNK + " must be in range "
+                    + TreeHasher.MIN_CHUNK_SIZE + ".." + TreeHasher.MAX_CHUNK_SIZE);
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length || args[index] == null) {
+            throw new IllegalArgumentException("Expected value after " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static int parseInt(String[] args, int index) {
+        long result = parseLong(args, index);
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(args[index - 1] + " is too large");
+        }
+        return (int) result;
+    }
+
+    private static long parseLong(String[] args, int index) {
+        String value = value(args, index);
+        try {
+            long result = Long.parseLong(value);
+            if (result <= 0) {
+                throw new IllegalArgumentException(args[index - 1] + " must be positive");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Can't parse number " + value);
+        }
+    }
+}
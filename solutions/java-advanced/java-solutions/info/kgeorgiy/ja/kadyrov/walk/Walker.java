@@ -0,0 +1,45 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes files listed in the input and writes {@code hash file} lines.
+ *
+ * @author Kadyrov Rustam.
+ */
+interface Walker extends AutoCloseable {
+    /**
+     * Hashes every file listed in reader and writes results to writer.
+     *
+     * @param reader list of files, one per line.
+     * @param writer output for hashes.
+     * @throws IOException          if an I/O error occurs while reading list or writing hashes.
+     * @throws InterruptedException if calling thread was interrupted.
+     */
+    void walk(BufferedReader reader, HashWriter writer) throws IOException, InterruptedException;
+
+    /**
+     * Stops all workers.
+     */
+    @Override
+    void close();
+
+    /**
+     * Creates walker for parsed command line options.
+     */
+    @FunctionalInterface
+    interface Factory {
+        /**
+         * Creates walker.
+         *
+         * @param options command line options.
+         * @param hashers creates hasher for every worker.
+         * @param metrics metrics of the walk.
+         * @return new walker.
+         * @throws NoSuchAlgorithmException if digest algorithm is not supported.
+         */
+        Walker create(WalkOptions options, FileHasher.Factory hashers, WalkMetrics metrics) throws NoSuchAlgorithmException;
+    }
+}
@@ -0,0 +1,190 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walks listed files once and then keeps watching them, rewriting lines of changed files.
+ * Parent directories of listed files are registered with a {@link WatchService}.
+ * Events are coalesced: a file is queued at most once until it is hashed,
+ * and a batch is hashed only after no new events came for {@link #QUIET_MILLIS}.
+ * Event queue is bounded, when it overflows, as well as on {@link StandardWatchEventKinds#OVERFLOW},
+ * every listed file is hashed again.
+ * Digests have fixed width, so lines are rewritten in place.
+ * Runs until calling thread is interrupted.
+ *
+ * @author Kadyrov Rustam.
+ */
+class WatchingWalker implements Walker {
+    private static final int QUEUE_SIZE = 4096;
+    private static final long QUIET_MILLIS = 200;
+
+    private final Walker walker;
+    private final FileHasher hasher;
+    private final WatchService service;
+    private final BlockingQueue<Path> events = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rescan = new AtomicBoolean();
+    private final Map<Path, List<Integer>> lines = new HashMap<>();
+    private final List<String> files = new ArrayList<>();
+    private long[] positions;
+    private Thread watcher;
+
+    /**
+     * Creates watching walker.
+     *
+     * @param walker walks listed files for the first time, must write lines in input order.
+     * @param hasher hashes changed files.
+     * @throws IOException if watch service cannot be created.
+     */
+    WatchingWalker(Walker walker, FileHasher hasher) throws IOException {
+        this.walker = walker;
+        this.hasher = hasher;
+        this.service = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Walks listed files and then rewrites lines of changed files until interrupted.
+     */
+    @Override
+    public void walk(BufferedReader reader, HashWriter writer) throws IOException, InterruptedException {
+        StringBuilder input = new StringBuilder();
+        String line = reader.readLine();
+        while (line != null) {
+            files.add(line);
+            input.append(line).append('\n');
+            line = reader.readLine();
+        }
+        positions = new long[files.size()];
+        long position = 0;
+        for (int i = 0; i < files.size(); i++) {
+            positions[i] = position;
+            position += writer.lineLength(files.get(i));
+        }
+        // files changed during the first walk are hashed again after it
+        register();
+        watcher = new Thread(this::watch, "walk-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        walker.walk(new BufferedReader(new StringReader(input.toString())), writer);
+        writer.flush();
+
+        while (!Thread.interrupted()) {
+            Set<Path> batch = new LinkedHashSet<>();
+            Path path = events.take();
+            while (path != null) {
+                batch.add(path);
+                path = events.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            queued.removeAll(batch);
+            if (rescan.getAndSet(false)) {
+                queued.clear();
+                events.clear();
+                batch = lines.keySet();
+            }
+            for (Path changed : batch) {
+                List<Integer> indices = lines.get(changed);
+                if (indices != null) {
+                    rehash(indices, writer);
+                }
+            }
+            writer.flush();
+        }
+        throw new InterruptedException();
+    }
+
+    private void register() {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                Path path = Path.of(files.get(i)).toAbsolutePath().normalize();
+                lines.computeIfAbsent(path, p -> new ArrayList<>()).add(i);
+                if (path.getParent() != null) {
+                    dirs.add(path.getParent());
+                }
+            } catch (InvalidPathException | SecurityException e) {
+                // such file never changes
+            }
+        }
+        for (Path dir : dirs) {
+            try {
+                dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException | SecurityException e) {
+                System.err.println("Cannot watch directory " + dir + " " + e.getMessage());
+            }
+        }
+    }
+
+    private void rehash(List<Integer> indices, HashWriter writer) throws IOException {
+        byte[] digest = hasher.hash(files.get(indices.get(0)));
+        for (int index : indices) {
+            writer.rewrite(positions[index], digest);
+        }
+    }
+
+    /**
+     * Moves events from the watch service to the bounded queue.
+     */
+    private void watch() {
+        try {
+            while (!Thread.interrupted()) {
+                WatchKey key = service.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        requestRescan();
+                    } else {
+                        Path path = dir.resolve((Path) event.context());
+                        if (lines.containsKey(path) && queued.add(path) && !events.offer(path)) {
+                            requestRescan();
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Directory is no longer watched " + dir);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void requestRescan() {
+        rescan.set(true);
+        // wakes up the walker, if queue is full, it is awake anyway
+        events.offer(Path.of(""));
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            System.err.println("Cannot close watch service" + " " + e.getMessage());
+        }
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        walker.close();
+    }
+}
@@ -0,0 +1,166 @@
+package info.kgeorgiy.ja.kadyrov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Fast non-cryptographic <a href="https://github.com/Cyan4973/xxHash">XXH64</a> hash with zero seed.
+ * Digest is the 64-bit hash value in big-endian byte order.
+ *
+ * @author Kadyrov Rustam.
+ */
+class Xxh64Digest extends MessageDigest {
+    /**
+     * Name of the algorithm.
+     */
+    static final String ALGORITHM = "XXH64";
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    /**
+     * Creates digest.
+     */
+    Xxh64Digest() {
+        super(ALGORITHM);
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        total++;
+        tail.put(input);
+        if (!tail.hasRemaining()) {
+            stripe(tail, 0);
+            tail.clear();
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        engineUpdate(ByteBuffer.wrap(input, offset, len));
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        ByteOrder order = input.order();
+        input.order(ByteOrder.LITTLE_ENDIAN);
+        total += input.remaining();
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && input.hasRemaining()) {
+                tail.put(input.get());
+            }
+            if (tail.hasRemaining()) {
+                input.order(order);
+                return;
+            }
+            stripe(tail, 0);
+            tail.clear();
+        }
+        int position = input.position();
+        int end = input.limit() - STRIPE;
+        for (; position <= end; position += STRIPE) {
+            stripe(input, position);
+        }
+        input.position(position);
+        tail.put(input);
+        input.order(order);
+    }
+
+    private void stripe(ByteBuffer input, int position) {
+        v1 = round(v1, input.getLong(position));
+        v2 = round(v2, input.getLong(position + 8));
+        v3 = round(v3, input.getLong(position + 16));
+        v4 = round(v4, input.getLong(position + 24));
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        return ByteBuffer.allocate(Long.BYTES).putLong(finish()).array();
+    }
+
+    @Override
+    protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+        if (len < Long.BYTES) {
+            throw new DigestException("Partial digests not returned");
+        }
+        long h = finish();
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            buf[offset + i] = (byte) h;
+            h >>>= Byte.SIZE;
+        }
+        return Long.BYTES;
+    }
+
+    private long finish() {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = P5;
+        }
+        h += total;
+        int length = tail.position();
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            h ^= round(0, tail.getLong(i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + Integer.BYTES <= length) {
+            h ^= (tail.getInt(i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += Integer.BYTES;
+        }
+        for (; i < length; i++) {
+            h ^= (tail.get(i) & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        engineReset();
+        return h;
+    }
+
+    @Override
+    protected void engineReset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        tail.clear();
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value)) * P1 + P4;
+    }
+}
@@ -0,0 +1,481 @@
+package info.kgeorgiy.ja.kadyrov.walk.tests;
+
+import info.kgeorgiy.ja.kadyrov.walk.RecursiveWalk;
+import info.kgeorgiy.ja.kadyrov.walk.Walk;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class WalkTest {
+    private final static int FILES = 500;
+    private final static int MAX_SIZE = 1 << 16;
+    private final static String ZERO_HASH = "0".repeat(64);
+    private static Path root;
+    private static List<String> files;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        root = Files.createTempDirectory("walk-test");
+        files = new ArrayList<>();
+        Random random = new Random(3239);
+        // Recently modified files are not cached
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+        for (int i = 0; i < FILES; i++) {
+            byte[] data = new byte[random.nextInt(MAX_SIZE)];
+            random.nextBytes(data);
+            Path dir = root.resolve("data").resolve("dir_" + i % 7).resolve("sub_" + i % 3);
+            Files.createDirectories(dir);
+            Path file = dir.resolve("file_" + i);
+            Files.write(file, data);
+            Files.setLastModifiedTime(file, past);
+            files.add(file.toString());
+            if (i % 50 == 0) {
+                files.add(dir.resolve("missing_" + i).toString());
+            }
+        }
+    }
+
+    @Test
+    public void test1() throws IOException {
+        System.err.println("test_1::sequential_walk.");
+        checkWalk("--threads", "1");
+        System.err.println("test_1::complete!");
+    }
+
+    @Test
+    public void test2() throws IOException {
+        System.err.println("test_2::parallel_walk_keeps_order.");
+        checkWalk("--threads", "8");
+        System.err.println("test_2::complete!");
+    }
+
+    @Test
+    public void test3() throws IOException {
+        System.err.println("test_3::default_threads.");
+        checkWalk();
+        System.err.println("test_3::complete!");
+    }
+
+    @Test
+    public void test4() throws IOException {
+        System.err.println("test_4::recursive_walk.");
+        List<String> existing = files.stream().filter(file -> Files.exists(Path.of(file))).sorted().toList();
+        List<String> actual = new ArrayList<>(runWalk(RecursiveWalk::main, List.of(root.resolve("data").toString()), "--threads", "4"));
+        actual.sort(Comparator.comparing(line -> line.substring(line.indexOf(' ') + 1)));
+        Assert.assertEquals(expected(existing), actual);
+        System.err.println("test_4::complete!");
+    }
+
+    @Test
+    public void test5() throws IOException {
+        System.err.println("test_5::hash_cache.");
+        String cache = root.resolve("cache.log").toString();
+        long existing = files.stream().filter(file -> Files.exists(Path.of(file))).count();
+        Assert.assertArrayEquals(new long[]{0, existing}, checkCachedWalk("--threads", "4", "--cache", cache));
+        Assert.assertArrayEquals(new long[]{existing, 0}, checkCachedWalk("--threads", "4", "--cache", cache));
+
+        Path changed = Path.of(files.get(2));
+        long modified = Files.getLastModifiedTime(changed).toMillis();
+        Files.write(changed, new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(modified + 10_000));
+        Assert.assertArrayEquals(new long[]{existing - 1, 1}, checkCachedWalk("--cache", cache));
+
+        // Replaced by another file of the same size and modification time
+        Path replaced = Path.of(files.get(3));
+        byte[] data = Files.readAllBytes(replaced);
+        data[0]++;
+        Path temp = root.resolve("replacement");
+        Files.write(temp, data);
+        Files.setLastModifiedTime(temp, Files.getLastModifiedTime(replaced));
+        Files.move(temp, replaced, StandardCopyOption.REPLACE_EXISTING);
+        Assert.assertArrayEquals(new long[]{existing - 1, 1}, checkCachedWalk("--cache", cache));
+
+        // Racily clean file may be changed again without changing its modification time
+        Files.write(replaced, data);
+        Assert.assertArrayEquals(new long[]{existing - 1, 1}, checkCachedWalk("--cache", cache));
+        Assert.assertArrayEquals(new long[]{existing - 1, 1}, checkCachedWalk("--cache", cache));
+        System.err.println("test_5::complete!");
+    }
+
+    @Test
+    public void test6() throws IOException {
+        System.err.println("test_6::several_algorithms.");
+        List<String> actual = runWalk(Walk::main, files, "--threads", "4", "--algorithms", "SHA-256,SHA-1,XXH64");
+        Assert.assertEquals(files.size(), actual.size());
+        for (int i = 0; i < files.size(); i++) {
+            String[] columns = actual.get(i).split(" ", 4);
+            Path path = Path.of(files.get(i));
+            Assert.assertEquals(files.get(i), columns[3]);
+            Assert.assertEquals(Files.exists(path) ? digest("SHA-1", Files.readAllBytes(path)) : "0".repeat(40), columns[1]);
+            Assert.assertEquals(16, columns[2].length());
+        }
+
+        Map<String, String> vectors = Map.of(
+                "", "ef46db3751d8e999",
+                "a", "d24ec4f1a98c6e5b",
+                "abc", "44bc2cf5ad770999",
+                "Nobody inspects the spammish repetition", "fbcea83c8a378bf1");
+        List<String> inputs = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        int index = 0;
+        for (Map.Entry<String, String> vector : vectors.entrySet()) {
+            byte[] data = vector.getKey().getBytes(StandardCharsets.US_ASCII);
+            Assert.assertEquals(vector.getValue(), xxh64(data, data.length));
+            // Pieces do not match 32-byte stripes, the longest vector spans two stripes
+            for (int piece : new int[]{1, 5, 31, 33}) {
+                Assert.assertEquals(vector.getValue(), xxh64(data, piece));
+            }
+            Path file = root.resolve("xxh64_" + index++);
+            Files.write(file, data);
+            inputs.add(file.toString());
+            expected.add(vector.getValue() + " " + file);
+        }
+        Assert.assertEquals(expected, runWalk(Walk::main, inputs, "--algorithms", "XXH64"));
+        System.err.println("test_6::complete!");
+    }
+
+    @Test
+    public void test7() throws IOException, InterruptedException {
+        System.err.println("test_7::watch_rewrites_changed_files.");
+        List<String> inputs = files.subList(0, 10);
+        Path input = root.resolve("watch-input.txt");
+        Path output = root.resolve("out").resolve("watch-output.txt");
+        Files.write(input, inputs, StandardCharsets.UTF_8);
+        Thread walk = new Thread(() -> Walk.main(new String[]{input.toString(), output.toString(), "--watch"}));
+        walk.start();
+        try {
+            awaitOutput(output, expected(inputs));
+            Path created = Path.of(inputs.get(1));
+            Files.write(Path.of(inputs.get(3)), new byte[]{4, 5, 6});
+            Files.write(created, new byte[]{7, 8, 9});
+            awaitOutput(output, expected(inputs));
+            Files.delete(created);
+            awaitOutput(output, expected(inputs));
+        } finally {
+            walk.interrupt();
+            walk.join();
+        }
+        System.err.println("test_7::complete!");
+    }
+
+    @Test
+    public void test8() throws IOException {
+        System.err.println("test_8::tree_mode.");
+        int chunk = 4096;
+        String cache = root.resolve("tree-cache.log").toString();
+        List<String> expected = new ArrayList<>();
+        long chunks = 0;
+        for (String file : files) {
+            Path path = Path.of(file);
+            if (!Files.exists(path)) {
+                expected.add(ZERO_HASH + " " + file);
+                continue;
+            }
+            byte[] data = Files.readAllBytes(path);
+            StringBuilder digests = new StringBuilder();
+            for (int i = 0; i < data.length; i += chunk, chunks++) {
+                digests.append(digest("SHA-256", Arrays.copyOfRange(data, i, Math.min(data.length, i + chunk))));
+            }
+            expected.add(digest("SHA-256", HexFormat.of().parseHex(digests)) + " " + file);
+        }
+        Path log = root.resolve("out").resolve("output.txt.chunks");
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(expected, runWalk(Walk::main, files, "--threads", "4",
+                    "--tree-chunk", String.valueOf(chunk), "--cache", cache));
+            Assert.assertEquals(chunks, Files.readAllLines(log, StandardCharsets.UTF_8).size());
+        }
+        System.err.println("test_8::complete!");
+    }
+
+    @Test
+    public void test9() throws IOException {
+        System.err.println("test_9::store_limit_keeps_order.");
+        checkWalk("--threads", "8", "--per-store", "1");
+        checkWalk("--threads", "8", "--per-store", "3");
+        System.err.println("test_9::complete!");
+    }
+
+    @Test
+    public void test10() throws Exception {
+        System.err.println("test_10::metrics_mxbean.");
+        List<String> inputs = files.subList(0, 10);
+        Path input = root.resolve("metrics-input.txt");
+        Path output = root.resolve("out").resolve("metrics-output.txt");
+        Files.write(input, inputs, StandardCharsets.UTF_8);
+        Thread walk = new Thread(() -> Walk.main(new String[]{
+                input.toString(), output.toString(), "--watch", "--progress", "1"}));
+        walk.start();
+        try {
+            awaitOutput(output, expected(inputs));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("info.kgeorgiy.ja.kadyrov.walk:type=WalkMetrics");
+            Assert.assertEquals((long) inputs.size(), server.getAttribute(name, "FileCount"));
+            Assert.assertEquals(0L, server.getAttribute(name, "QueuedFiles"));
+            Assert.assertEquals(0L, server.getAttribute(name, "RunningFiles"));
+            TabularData errors = (TabularData) server.getAttribute(name, "ErrorCounts");
+            Assert.assertEquals(1L, errors.get(new Object[]{"NoSuchFileException"}).get("value"));
+        } finally {
+            walk.interrupt();
+            walk.join();
+        }
+        System.err.println("test_10::complete!");
+    }
+
+    @Test
+    public void test11() throws IOException {
+        System.err.println("test_11::tree_mode_limits.");
+        int chunk = 4096;
+        Path output = root.resolve("out").resolve("output.txt");
+        Files.deleteIfExists(output);
+        runWalkRejected("--tree-chunk", "64");
+        runWalkRejected("--tree-chunk", "1");
+
+        // Needs one chunk more than supported, is not read at all
+        Path huge = root.resolve("sparse-huge");
+        try (RandomAccessFile file = new RandomAccessFile(huge.toFile(), "rw")) {
+            file.setLength((1L << 20) * chunk + 1);
+        }
+        Path small = root.resolve("sparse-small");
+        try (RandomAccessFile file = new RandomAccessFile(small.toFile(), "rw")) {
+            file.setLength(3L * chunk + 1);
+        }
+        try {
+            String zeros = digest("SHA-256", new byte[chunk]);
+            String tail = digest("SHA-256", new byte[1]);
+            String digest = digest("SHA-256", HexFormat.of().parseHex(zeros + zeros + zeros + tail));
+            Assert.assertEquals(List.of(ZERO_HASH + " " + huge, digest + " " + small),
+                    runWalk(Walk::main, List.of(huge.toString(), small.toString()),
+                            "--threads", "2", "--tree-chunk", String.valueOf(chunk)));
+        } finally {
+            Files.delete(huge);
+            Files.delete(small);
+        }
+        System.err.println("test_11::complete!");
+    }
+
+    @Test
+    public void test12() throws Exception {
+        System.err.println("test_12::recursive_walk_survives_failed_file.");
+        Path dir = root.resolve("failing");
+        Files.createDirectories(dir);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Path empty = Files.write(dir.resolve("empty_" + i), new byte[0]);
+            expected.add(digest("SHA-256", new byte[0]) + " " + empty);
+        }
+        Path failing = Files.write(dir.resolve("failing"), new byte[]{1});
+        expected.add(ZERO_HASH + " " + failing);
+        expected.sort(Comparator.comparing(line -> line.substring(line.indexOf(' ') + 1)));
+
+        // Chunks of non-empty files are rejected by the stopped pool of the tree hasher,
+        // so hashing of the non-empty file throws RejectedExecutionException, files without chunks are hashed
+        Class<?> walkers = Class.forName("info.kgeorgiy.ja.kadyrov.walk.Walker$Factory");
+        Class<?> hashers = Class.forName("info.kgeorgiy.ja.kadyrov.walk.FileHasher$Factory");
+        Class<?> metrics = Class.forName("info.kgeorgiy.ja.kadyrov.walk.WalkMetrics");
+        Method create = hashers.getDeclaredMethod("create");
+        create.setAccessible(true);
+        Constructor<?> recursive = Class.forName("info.kgeorgiy.ja.kadyrov.walk.RecursiveHasher")
+                .getDeclaredConstructor(int.class, hashers, metrics);
+        recursive.setAccessible(true);
+        // Package-private Walker puts the proxy into its package, which makes Walker accessible to the proxy
+        Class<?>[] interfaces = {walkers, Class.forName("info.kgeorgiy.ja.kadyrov.walk.Walker")};
+        Object factory = Proxy.newProxyInstance(walkers.getClassLoader(), interfaces, (proxy, method, args) -> {
+            Object tree = field(create.invoke(args[1]), "tree");
+            ((ExecutorService) field(tree, "pool")).shutdown();
+            return recursive.newInstance(2, args[1], args[2]);
+        });
+        Method run = Walk.class.getDeclaredMethod("run", String[].class, walkers);
+        run.setAccessible(true);
+
+        Path input = root.resolve("input.txt");
+        Path output = root.resolve("out").resolve("failing.txt");
+        Files.write(input, List.of(dir.toString()), StandardCharsets.UTF_8);
+        Assert.assertEquals(false, run.invoke(null, new String[]{
+                input.toString(), output.toString(), "--tree-chunk", "4096"}, factory));
+        List<String> actual = new ArrayList<>(Files.readAllLines(output, StandardCharsets.UTF_8));
+        actual.sort(Comparator.comparing(line -> line.substring(line.indexOf(' ') + 1)));
+        Assert.assertEquals(expected, actual);
+        System.err.println("test_12::complete!");
+    }
+
+    @Test
+    public void test13() throws Exception {
+        System.err.println("test_13::failed_cache_write_keeps_digest.");
+        byte[] data = "cached".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(root.resolve("uncached"), data);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        // Appends to the closed cache fail with ClosedChannelException
+        Class<?> caches = Class.forName("info.kgeorgiy.ja.kadyrov.walk.HashCache");
+        Method open = caches.getDeclaredMethod("open", Path.class);
+        open.setAccessible(true);
+        AutoCloseable cache = (AutoCloseable) open.invoke(null, root.resolve("closed-cache.log"));
+        cache.close();
+        Class<?> hashers = Class.forName("info.kgeorgiy.ja.kadyrov.walk.FileHasher");
+        Constructor<?> constructor = hashers.getDeclaredConstructor(List.class, caches,
+                Class.forName("info.kgeorgiy.ja.kadyrov.walk.TreeHasher"),
+                Class.forName("info.kgeorgiy.ja.kadyrov.walk.WalkMetrics"));
+        constructor.setAccessible(true);
+        Object hasher = constructor.newInstance(List.of("SHA-256"), cache, null, null);
+        Method hash = hashers.getDeclaredMethod("hash", String.class);
+        hash.setAccessible(true);
+        Assert.assertEquals(digest("SHA-256", data),
+                HexFormat.of().formatHex((byte[]) hash.invoke(hasher, file.toString())));
+        System.err.println("test_13::complete!");
+    }
+
+    @Test
+    public void test14() throws Exception {
+        System.err.println("test_14::failed_chunk_does_not_corrupt_next_one.");
+        byte[] data = "chunk".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(root.resolve("chunk"), data);
+        Class<?> trees = Class.forName("info.kgeorgiy.ja.kadyrov.walk.TreeHasher");
+        Method open = trees.getDeclaredMethod("open", Path.class, long.class, int.class, List.class);
+        open.setAccessible(true);
+        Method hashChunk = trees.getDeclaredMethod("hashChunk", MappedByteBuffer.class, byte[].class, int.class);
+        hashChunk.setAccessible(true);
+        try (AutoCloseable tree = (AutoCloseable) open.invoke(null, root.resolve("chunk.log"), 4096L, 1, List.of("SHA-256"));
+             FileChannel channel = FileChannel.open(file)) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, 0, data.length);
+            // Digest does not fit, so the chunk fails after the digest was updated
+            try {
+                hashChunk.invoke(tree, chunk, new byte[16], 0);
+                Assert.fail("Expected IllegalArgumentException");
+            } catch (InvocationTargetException e) {
+                Assert.assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+            }
+            byte[] result = new byte[32];
+            hashChunk.invoke(tree, chunk, result, 0);
+            Assert.assertEquals(digest("SHA-256", data), HexFormat.of().formatHex(result));
+        }
+        System.err.println("test_14::complete!");
+    }
+
+    private static Object field(Object object, String name) throws ReflectiveOperationException {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    private static void runWalkRejected(String... options) throws IOException {
+        Path output = root.resolve("out").resolve("output.txt");
+        try {
+            runWalk(Walk::main, files, options);
+            Assert.fail("Options accepted: " + String.join(" ", options));
+        } catch (NoSuchFileException e) {
+            Assert.assertFalse(Files.exists(output));
+        }
+    }
+
+    private static void awaitOutput(Path output, List<String> expected) throws IOException, InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (Files.exists(output) && expected.equals(Files.readAllLines(output, StandardCharsets.UTF_8))) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(expected, Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    private static void checkWalk(String... options) throws IOException {
+        Assert.assertEquals(expected(files), runWalk(Walk::main, files, options));
+    }
+
+    /**
+     * Checks walk and returns numbers of hash cache hits and misses it printed.
+     */
+    private static long[] checkCachedWalk(String... options) throws IOException {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        try {
+            checkWalk(options);
+        } finally {
+            System.setOut(out);
+        }
+        Matcher matcher = Pattern.compile("Hash cache: (\\d+) hits, (\\d+) misses")
+                .matcher(printed.toString(StandardCharsets.UTF_8));
+        Assert.assertTrue("Cache statistics are not printed", matcher.find());
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))};
+    }
+
+    private static List<String> runWalk(Consumer<String[]> walk, List<String> inputs, String... options) throws IOException {
+        Path input = root.resolve("input.txt");
+        Path output = root.resolve("out").resolve("output.txt");
+        Files.write(input, inputs, StandardCharsets.UTF_8);
+        List<String> args = new ArrayList<>(List.of(input.toString(), output.toString()));
+        args.addAll(List.of(options));
+        walk.accept(args.toArray(String[]::new));
+        return Files.readAllLines(output, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> expected(List<String> files) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String file : files) {
+            Path path = Path.of(file);
+            lines.add((Files.exists(path) ? digest("SHA-256", Files.readAllBytes(path)) : ZERO_HASH) + " " + file);
+        }
+        return lines;
+    }
+
+    private static String xxh64(byte[] data, int piece) {
+        try {
+            Constructor<?> constructor = Class.forName("info.kgeorgiy.ja.kadyrov.walk.Xxh64Digest")
+                    .getDeclaredConstructor();
+            constructor.setAccessible(true);
+            MessageDigest digest = (MessageDigest) constructor.newInstance();
+            for (int i = 0; i < data.length; i += piece) {
+                digest.update(data, i, Math.min(piece, data.length - i));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String digest(String algorithm, byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}